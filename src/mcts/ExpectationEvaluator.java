@@ -0,0 +1,75 @@
+package mcts;
+
+import problem.MoveDistribution;
+import problem.ProblemSpec;
+import simulator.State;
+
+/**
+ * Values a leaf by the exact expected reward of the next moves instead of a
+ * sampled playout. All outcomes of a move are enumerated with their
+ * probabilities, so one evaluation replaces many noisy playouts.
+ *
+ * With a depth of k the car keeps moving for k moves, each move after the
+ * first discounted once more. A car without enough fuel to move, or at the
+ * goal, is worth nothing.
+ */
+class ExpectationEvaluator {
+
+    private final ProblemSpec ps;
+    private final int depth;
+    private final double discount;
+
+    /**
+     * @param depth number of moves to look ahead, at least 1
+     */
+    ExpectationEvaluator(ProblemSpec ps, int depth) {
+        this.ps = ps;
+        this.depth = Math.max(1, depth);
+        this.discount = ps.getDiscountFactor();
+    }
+
+    /**
+     * @param state state of the leaf, before its move
+     * @return expected discounted reward of the next moves
+     */
+    double evaluate(State state) {
+        return evaluate(state, depth);
+    }
+
+    private double evaluate(State state, int movesLeft) {
+        if (movesLeft == 0 || state.getPos() >= ps.getN())
+            return 0;
+        int fuelConsumption = ps.getFuelTable().getConsumption(state.getPos(),
+                ps.getCarIndex(state.getCarType()), state.getTirePressure());
+        if (fuelConsumption > state.getFuel())
+            return 0;
+        State afterFuel = ps.getLevel().getLevelNumber() > 1 ? state.consumeFuel(fuelConsumption) : state;
+
+        MoveDistribution moveDistribution = ps.getMoveDistribution();
+        int configuration = moveDistribution.getConfiguration(state.getPos(), state.getCarType(),
+                state.getDriver(), state.getTireModel(), state.getTirePressure());
+        double value = 0;
+        for (int k = 0; k < ProblemSpec.CAR_MOVE_RANGE; k++) {
+            double probability = moveDistribution.getProbability(configuration, k);
+            if (probability == 0)
+                continue;
+            int move = ps.convertIndexIntoMove(k);
+            double reward;
+            State next;
+            if (move == ProblemSpec.SLIP) {
+                reward = Rewards.slipReward(ps);
+                next = afterFuel;
+            } else if (move == ProblemSpec.BREAKDOWN) {
+                reward = Rewards.breakdownReward(ps);
+                next = afterFuel;
+            } else {
+                next = afterFuel.changePosition(move, ps.getN());
+                reward = Rewards.progressReward(next.getPos() - state.getPos());
+            }
+            if (movesLeft > 1)
+                reward += discount * evaluate(next, movesLeft - 1);
+            value += probability * reward;
+        }
+        return value;
+    }
+}
@@ -6,39 +6,137 @@ import simulator.*;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.ObjLongConsumer;
 
 public class MCTS {
     private ProblemSpec ps;
+    private SearchConfig config;
+    /** One search tree per worker, kept between decisions when tree reuse is enabled **/
+    private Tree[] trees;
+    /** Whether the subtree of the realised state is kept between decisions **/
+    private boolean reuseTree;
+    /** Transposition table of each search tree, null entries when disabled **/
+    private TranspositionTable[] tables;
+    /** One node pool per worker when the pooled backend is used **/
+    private NodePool[] pools;
+    /** One random source per worker **/
+    private RandomSource[] randoms;
+    /** Runs the workers of the parallel search **/
+    private ExecutorService executor;
+    /** Whether all workers share one tree and therefore need virtual loss **/
+    private boolean sharedTree;
+    /** Reward penalty of a visit in flight, 0 unless the tree is shared **/
+    private double virtualLoss;
+    /** Scores children during selection **/
+    private SelectionPolicy selectionPolicy;
+    /** Runs the playout batches in leaf parallel mode **/
+    private ForkJoinPool playoutPool;
+    /** Values leaves analytically, null when leaves are valued by playouts **/
+    private ExpectationEvaluator expectationEvaluator;
+    /** Plays leaves out with the rollout policy of the level **/
+    private RolloutSimulator rolloutSimulator;
+    /** Samples the move outcomes of chance nodes **/
+    private TransitionKernel kernel;
     public int stepCounter = 0;
 
-    public MCTS(ProblemSpec ps, String output) {
+    public MCTS(ProblemSpec ps, String output) throws IOException {
+        this(ps, output, new SearchConfig());
+    }
+
+    public MCTS(ProblemSpec ps, String output, SearchConfig config) throws IOException {
         this.ps = ps;
+        this.config = config;
+        int workers = Math.max(1, config.getThreads());
+        SearchConfig.Parallelism parallelism = workers > 1 ? config.getParallelism() : null;
+        sharedTree = parallelism == SearchConfig.Parallelism.TREE;
+        virtualLoss = sharedTree ? config.getVirtualLoss() : 0;
+        selectionPolicy = SelectionPolicy.create(config.getSelection(), config.getExploration());
+        if (config.getEvaluator() == SearchConfig.Evaluator.EXPECTATION)
+            expectationEvaluator = new ExpectationEvaluator(ps, config.getEvaluatorDepth());
+        kernel = new TransitionKernel(ps);
+        int level = ps.getLevel().getLevelNumber();
+        rolloutSimulator = new RolloutSimulator(ps, config.getRolloutPolicy(level), config.getRolloutHorizon(level));
+        int searchers = parallelism == SearchConfig.Parallelism.LEAF ? 1 : workers;
+        if (config.getBackend() == SearchConfig.Backend.POOLED) {
+            checkPooledConfig(parallelism);
+            trees = new Tree[0];
+            pools = new NodePool[searchers];
+            for (int i = 0; i < searchers; i++)
+                pools[i] = new NodePool();
+        } else {
+            trees = new Tree[parallelism == SearchConfig.Parallelism.ROOT ? workers : 1];
+            // without chance nodes the children hold the states before the
+            // move, which never match the realised state
+            reuseTree = config.isReuseTree() && config.isChanceNodes();
+            if (config.isReuseTree() && !config.isChanceNodes())
+                System.err.println("Tree reuse needs chance nodes, reuseTree is ignored");
+        }
+        tables = new TranspositionTable[trees.length];
+        if (config.isTranspositions()) {
+            for (int i = 0; i < tables.length; i++)
+                tables[i] = new TranspositionTable(config.getTranspositionTableSize());
+        }
+        long seed = config.getSeed() != null ? config.getSeed() : new SplittableRandomSource().nextLong();
+        if (config.isVerbose())
+            System.err.println("Random seed: " + seed);
+        RandomSource master = RandomSource.create(config.getRandomType(), seed);
+        RandomSource simulatorRandom = master.split();
+        randoms = new RandomSource[searchers];
+        for (int i = 0; i < searchers; i++)
+            randoms[i] = master.split();
+        if (parallelism == SearchConfig.Parallelism.LEAF)
+            playoutPool = new ForkJoinPool(workers);
+        else if (searchers > 1)
+            executor = Executors.newFixedThreadPool(workers);
         int step = 0;
         State s = new State(1, false, false, ps.getFirstCarType(), ProblemSpec.FUEL_MAX,
                 TirePressure.ONE_HUNDRED_PERCENT, ps.getFirstDriver(), ps.getFirstTireModel());
-        Simulator sim = new Simulator(ps, output);
+        TraceWriter trace = config.getTraceFile() != null ? new TraceWriter(ps, config.getTraceFile()) : null;
+        Simulator sim = new Simulator(ps, output, trace, simulatorRandom);
         Action a;
         while (s.getPos() < ps.getN()) {
             a = findNextMove(s);
             s = sim.step(a);
             if (s != null)
                 step += increaseStep(ps, s, a);
-            if (a.getActionType().getActionNo() != 1) {
+            if (s != null && a.getActionType().getActionNo() != 1) {
                 s = sim.step(new Action(ActionType.MOVE));
                 if (s != null)
                     step += increaseStep(ps, s, a);
             }
 
+            // keep the subtree of the state we actually ended up in
+            for (int i = 0; i < trees.length; i++) {
+                if (s == null || !reuseTree || !trees[i].reRoot(a, s))
+                    trees[i] = null;
+            }
+
             if (s == null) {
                 System.out.println("Failed attempt. Retrying...");
                 step = 0;
                 s = new State(1, false, false, ps.getFirstCarType(), ProblemSpec.FUEL_MAX,
                         TirePressure.ONE_HUNDRED_PERCENT, ps.getFirstDriver(), ps.getFirstTireModel());
-                sim = new Simulator(ps, output);
+                sim = new Simulator(ps, output, trace, simulatorRandom);
             }
         }
+        if (executor != null)
+            executor.shutdown();
+        if (playoutPool != null)
+            playoutPool.shutdown();
+        if (trace != null)
+            trace.close();
         System.out.println("Goal Reached!!!");
         /*BufferedReader br = null;
         try {
@@ -61,166 +159,602 @@ public class MCTS {
         long start = System.currentTimeMillis();
         long end = start + 100*getMillisForCurrentLevel();
 
-        Tree tree = new Tree();
-        Node rootNode = tree.getRoot();
-        rootNode.setState(s);
-        rootNode.setChildArray(getPossibleChildren(rootNode));
+        if (pools != null)
+            return findNextMovePooled(s, end);
+
+        for (int i = 0; i < trees.length; i++) {
+            if (trees[i] == null || !s.equals(trees[i].getRoot().getState())) {
+                trees[i] = new Tree();
+                trees[i].getRoot().setState(s);
+            }
+        }
+
+        if (randoms.length == 1) {
+            search(trees[0].getRoot(), tables[0], end, randoms[0]);
+            return trees[0].getRoot().getChildWithMaxScore().getAction();
+        }
+        if (sharedTree)
+            return findNextMoveTreeParallel(end);
+        return findNextMoveRootParallel(end);
+    }
+
+    /**
+     * Let every worker descend the same tree until the deadline, then pick
+     * the most visited root child.
+     */
+    private Action findNextMoveTreeParallel(long end) {
+        Node root = trees[0].getRoot();
+        TranspositionTable table = tables[0];
+        expand(root, table);
+        List<Future<?>> futures = new ArrayList<>();
+        for (RandomSource random : randoms) {
+            futures.add(executor.submit(() -> search(root, table, end, random)));
+        }
+        awaitWorkers(futures);
+        return root.getChildWithMaxScore().getAction();
+    }
+
+    /**
+     * Let every worker grow its own tree from the same root until the
+     * deadline, then pick the action with the most visits over all trees.
+     */
+    private Action findNextMoveRootParallel(long end) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < trees.length; i++) {
+            final Node root = trees[i].getRoot();
+            final TranspositionTable table = tables[i];
+            final RandomSource random = randoms[i];
+            futures.add(executor.submit(() -> search(root, table, end, random)));
+        }
+        awaitWorkers(futures);
+
+        // merge root children of all trees by action, the actions themselves
+        // are taken from the first tree
+        Map<String, Node> merged = new LinkedHashMap<>();
+        for (Tree t : trees) {
+            for (Node child : t.getRoot().getChildArray())
+                mergeRootChild(merged, child.getAction(), child.getVisitCount(), child.getWinScore());
+        }
+        return getMergedBest(merged);
+    }
+
+    private void mergeRootChild(Map<String, Node> merged, Action action, int visits, double reward) {
+        Node m = merged.get(action.getText());
+        if (m == null) {
+            m = new Node();
+            m.setAction(action);
+            merged.put(action.getText(), m);
+        }
+        m.setVisitCount(m.getVisitCount() + visits);
+        m.setWinScore(m.getWinScore() + reward);
+    }
+
+    private Action getMergedBest(Map<String, Node> merged) {
+        Node mergedRoot = new Node();
+        mergedRoot.setChildArray(new ArrayList<>(merged.values()));
+        return mergedRoot.getChildWithMaxScore().getAction();
+    }
+
+    /**
+     * Search with the pooled backend, one pool per worker. With several
+     * workers the root children are merged as in the root parallel search.
+     */
+    private Action findNextMovePooled(State s, long end) {
+        long rootState = PackedState.pack(ps, s);
+        if (pools.length == 1) {
+            searchPooled(pools[0], rootState, end, randoms[0]);
+            return pools[0].getAction(pools[0].getChildWithMaxVisits(0));
+        }
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < pools.length; i++) {
+            final NodePool pool = pools[i];
+            final RandomSource random = randoms[i];
+            futures.add(executor.submit(() -> searchPooled(pool, rootState, end, random)));
+        }
+        awaitWorkers(futures);
+
+        Map<String, Node> merged = new LinkedHashMap<>();
+        for (NodePool pool : pools) {
+            int first = pool.getFirstChild(0);
+            for (int c = first; c < first + pool.getChildCount(0); c++)
+                mergeRootChild(merged, pool.getAction(c), pool.getVisits(c), pool.getReward(c));
+        }
+        return getMergedBest(merged);
+    }
 
-        while (System.currentTimeMillis() < end) {
+    /**
+     * Run MCTS iterations on a node pool until the deadline. Same phases as
+     * search, but all tree bookkeeping works on node indices.
+     *
+     * @param pool the pool to build the tree in, reset first
+     * @param rootState packed state of the root
+     * @param end deadline in milliseconds
+     * @param random random source of the calling worker
+     */
+    private void searchPooled(NodePool pool, long rootState, long end, RandomSource random) {
+        int root = pool.addRoot(rootState);
+        expandPooled(pool, root);
+        ScratchState scratch = new ScratchState();
+        int count = Math.max(1, config.getBatchSize());
+
+        for (int iteration = 0; withinBudget(end, iteration); iteration++) {
             // Phase 1 - Selection
-            Node promisingNode = selectPromisingNode(rootNode);
+            int promisingNode;
+            if (pool.getVisits(root) < pool.getChildCount(root))
+                promisingNode = pool.getFirstChild(root) + random.nextInt(pool.getChildCount(root));
+            else
+                promisingNode = selectionPolicy.select(pool, root, random);
 
             // Phase 2 - Expansion
-            getPossibleChildren(promisingNode);
+            expandPooled(pool, promisingNode);
 
             // Phase 3 - Simulation
-            Node nodeToExplore;
-            nodeToExplore = promisingNode.getRandomChildNode();
-            double playoutResult = simulateRandomPlayout(nodeToExplore);
+            int nodeToExplore = promisingNode;
+            if (pool.getChildCount(promisingNode) > 0)
+                nodeToExplore = pool.getFirstChild(promisingNode)
+                        + random.nextInt(pool.getChildCount(promisingNode));
+            // straight from the packed state, so an iteration does not allocate
+            long key = pool.getState(nodeToExplore);
+            double sum = 0;
+            double squaredSum = 0;
+            for (int i = 0; i < count; i++) {
+                double reward = rolloutSimulator.rollout(key, scratch, random);
+                sum += reward;
+                squaredSum += reward * reward;
+            }
+
+            // Phase 4 - Update
+            pool.backPropagate(nodeToExplore, count, sum, squaredSum);
+        }
+    }
+
+    /**
+     * Reject the settings the pooled backend cannot search with, and warn
+     * about the default ones it ignores
+     */
+    private void checkPooledConfig(SearchConfig.Parallelism parallelism) {
+        if (parallelism == SearchConfig.Parallelism.TREE || parallelism == SearchConfig.Parallelism.LEAF)
+            throw new IllegalArgumentException("Tree and leaf parallel search need the object backend");
+        if (config.isTranspositions())
+            throw new IllegalArgumentException("Transpositions need the object backend");
+        if (expectationEvaluator != null)
+            throw new IllegalArgumentException("The expectation evaluator needs the object backend");
+        if (config.isChanceNodes() || config.isReuseTree())
+            System.err.println("The pooled backend selects below the root only and rebuilds its tree "
+                    + "for every decision, chanceNodes and reuseTree are ignored");
+    }
+
+    private void expandPooled(NodePool pool, int node) {
+        if (pool.isExpanded(node))
+            return;
+        pool.beginChildren(node);
+        forEachPossibleAction(pool.getState(node), (action, nextKey) -> pool.addChild(node, action, nextKey));
+    }
+
+    /**
+     * Whether a worker may start another iteration: within the iteration
+     * budget if one is set, otherwise before the deadline
+     *
+     * @param end deadline in milliseconds
+     * @param iterations number of iterations the worker has run
+     */
+    private boolean withinBudget(long end, int iterations) {
+        if (config.getIterations() > 0)
+            return iterations < config.getIterations();
+        return System.currentTimeMillis() < end;
+    }
+
+    private void awaitWorkers(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Search worker failed", e);
+            }
+        }
+    }
+
+    /**
+     * Run MCTS iterations on the tree below rootNode until the deadline or
+     * the iteration budget
+     *
+     * @param rootNode the root of the tree to grow
+     * @param table transposition table of the tree, or null
+     * @param end deadline in milliseconds
+     * @param random random source of the calling worker
+     */
+    private void search(Node rootNode, TranspositionTable table, long end, RandomSource random) {
+        expand(rootNode, table);
+        if (config.isChanceNodes()) {
+            searchWithChanceNodes(rootNode, table, end, random);
+            return;
+        }
+
+        for (int iteration = 0; withinBudget(end, iteration); iteration++) {
+            // Phase 1 - Selection
+            Node promisingNode = selectPromisingNode(rootNode, random);
+
+            // Phase 2 - Expansion, only once so the statistics below survive
+            expand(promisingNode, table);
+
+            // Phase 3 - Simulation
+            Node nodeToExplore = promisingNode;
+            if (!promisingNode.getChildArray().isEmpty())
+                nodeToExplore = promisingNode.getRandomChildNode(random);
+            if (sharedTree)
+                addVirtualLoss(nodeToExplore);
+            double[] playoutResult = simulatePlayouts(nodeToExplore.getState(), random);
 
             // Phase 4 - Update
             backPropagation(nodeToExplore, playoutResult);
         }
+    }
 
-        Node winnerNode = rootNode.getChildWithMaxScore();
-        return winnerNode.getAction();
+    /**
+     * Run MCTS iterations that descend as deep as the statistics allow. The
+     * tree alternates between decision nodes, holding a state in which an
+     * action is chosen, and chance nodes, holding an action and the state it
+     * leads to before the stochastic move. The children of a chance node are
+     * the sampled move outcomes. Both kinds of nodes widen progressively so
+     * new children are only added once the existing ones have been visited
+     * often enough.
+     *
+     * @param rootNode the root decision node
+     * @param table transposition table of the tree, or null
+     * @param end deadline in milliseconds
+     * @param random random source of the calling worker
+     */
+    private void searchWithChanceNodes(Node rootNode, TranspositionTable table, long end,
+                                       RandomSource random) {
+        for (int iteration = 0; withinBudget(end, iteration); iteration++) {
+            // Phase 1 and 2 - Selection and expansion down to a new or terminal node
+            Node node = rootNode;
+            int depth = 0;
+            while (effectiveVisits(node) > 0 && depth < config.getMaxDepth()
+                    && node.getState().getPos() < ps.getN()) {
+                expand(node, table);
+                if (node.getChildArray().isEmpty())
+                    break;
+                Node chanceNode = selectAction(node, random);
+                node = selectOutcome(chanceNode, table, random);
+                depth++;
+            }
+
+            // Phase 3 - Simulation
+            if (sharedTree)
+                addVirtualLoss(node);
+            double[] playoutResult;
+            if (node.getState().getPos() >= ps.getN())
+                playoutResult = new double[] {1, 0, 0};
+            else
+                playoutResult = simulatePlayouts(node.getState(), random);
+
+            // Phase 4 - Update
+            backPropagation(node, playoutResult);
+        }
+    }
+
+    /**
+     * Pick a chance node below a decision node. Only the first
+     * ceil(k * (n + 1)^alpha) children are open, where n is the visit count of
+     * the decision node, so the search concentrates on the earliest generated
+     * actions (MOVE comes first) before widening.
+     */
+    private Node selectAction(Node node, RandomSource random) {
+        List<Node> children = node.getChildArray();
+        int visits = effectiveVisits(node);
+        int open = Math.min(children.size(), widening(config.getActionWidening(),
+                config.getActionWideningExponent(), visits));
+        for (int i = 0; i < open; i++) {
+            Node child = children.get(i);
+            if (effectiveVisits(child) == 0)
+                return child;
+        }
+        return selectionPolicy.select(children, open, visits, virtualLoss, random);
     }
 
-    private Node selectPromisingNode(Node rootNode) {
+    /**
+     * Pick an outcome of a chance node. While the number of outcomes is below
+     * the widening limit a new move is sampled, which either leads to a known
+     * outcome or adds a new one. Otherwise a known outcome is chosen in
+     * proportion to how often it has been visited from this chance node.
+     * Both use the edge visits, as the statistics of an outcome count every
+     * visit of its state when transpositions are enabled, and so no longer
+     * follow the move distribution.
+     */
+    private Node selectOutcome(Node chanceNode, TranspositionTable table, RandomSource random) {
+        // findOrAddOutcome replaces the list when it adds an outcome, so this
+        // snapshot stays the same while other threads add to the node
+        List<Node> outcomes = chanceNode.getChildArray();
+        int visits = chanceNode.getEdgeVisits();
+        if (outcomes == null || outcomes.size() < widening(config.getOutcomeWidening(),
+                config.getOutcomeWideningExponent(), visits)) {
+            State before = chanceNode.getState();
+            State after = kernel.move(before, random);
+            double reward = Rewards.actionReward(chanceNode.getAction()) + Rewards.moveReward(ps, before, after);
+            // the simulator clears slip and breakdown once their time has passed
+            if (after.isInSlipCondition())
+                after = after.changeSlipCondition(false);
+            if (after.isInBreakdownCondition())
+                after = after.changeBreakdownCondition(false);
+            return findOrAddOutcome(chanceNode, after, reward, table);
+        }
+
+        // read every count once, other threads keep adding visits
+        int[] counts = new int[outcomes.size()];
+        int total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = outcomes.get(i).getEdgeVisits();
+            total += counts[i];
+        }
+        if (total == 0)
+            return outcomes.get(random.nextInt(counts.length));
+        int pick = random.nextInt(total);
+        int i = 0;
+        while (pick >= counts[i]) {
+            pick -= counts[i];
+            i++;
+        }
+        return outcomes.get(i);
+    }
+
+    /**
+     * Return the outcome of a chance node with the given state and reward,
+     * adding it first if it has not been seen yet. Slipping and not moving end
+     * in the same state with different rewards, so both are compared.
+     */
+    private Node findOrAddOutcome(Node chanceNode, State state, double reward, TranspositionTable table) {
+        synchronized (chanceNode) {
+            List<Node> outcomes = chanceNode.getChildArray();
+            if (outcomes != null) {
+                for (Node outcome : outcomes) {
+                    if (outcome.getOutcomeReward() == reward && state.equals(outcome.getState()))
+                        return outcome;
+                }
+            }
+            Node outcome = new Node();
+            outcome.setParent(chanceNode);
+            outcome.setState(state);
+            outcome.setOutcomeReward(reward);
+            // slips, breakdowns and moves of 0 share the value of the state
+            // they end in, the edge visits keep them apart
+            if (table != null)
+                outcome.setStatistics(table.get(TranspositionTable.decisionKey(ps, state)));
+            chanceNode.addChild(outcome);
+            return outcome;
+        }
+    }
+
+    private static int widening(double k, double alpha, int visits) {
+        return (int) Math.ceil(k * Math.pow(visits + 1, alpha));
+    }
+
+    private Node selectPromisingNode(Node rootNode, RandomSource random) {
         Node node = rootNode;
-        if (node.getVisitCount() < node.getChildArray().size())
-            node = node.getRandomChildNode();
+        int visits = effectiveVisits(node);
+        if (visits < node.getChildArray().size())
+            node = node.getRandomChildNode(random);
         else
-            node = UCT.findBestNodeWithUCT(node);
+            node = selectionPolicy.select(node.getChildArray(), node.getChildArray().size(),
+                    visits, virtualLoss, random);
         return node;
     }
 
-    private void backPropagation(Node nodeToExplore, double playoutResult) {
+    /**
+     * Visits through a node including the visits still in flight, which only
+     * exist in a shared tree. Selection compares parents and children by
+     * this count so threads spread over the children instead of all taking
+     * the same unvisited one.
+     */
+    private static int effectiveVisits(Node node) {
+        return node.getEdgeVisits() + node.getStatistics().getVirtualLosses();
+    }
+
+    /**
+     * Generate the children of a node unless that has already happened. When
+     * several threads race, only one of them builds the child list.
+     */
+    private void expand(Node node, TranspositionTable table) {
+        if (node.getChildArray() != null)
+            return;
+        synchronized (node) {
+            if (node.getChildArray() == null)
+                getPossibleChildren(node, table);
+        }
+    }
+
+    private void addVirtualLoss(Node nodeToExplore) {
         Node tempNode = nodeToExplore;
         while (tempNode != null) {
-            tempNode.incrementVisit();
-            tempNode.addScore(playoutResult);
+            tempNode.getStatistics().addVirtualLoss();
             tempNode = tempNode.getParent();
         }
     }
 
-    private double simulateRandomPlayout(Node node) {
-        double reward;
+    /**
+     * Back up the result of a batch of playouts through all ancestors
+     *
+     * @param nodeToExplore the node the playouts started from
+     * @param playoutResult {count, reward sum, squared reward sum} of the batch
+     */
+    private void backPropagation(Node nodeToExplore, double[] playoutResult) {
+        int count = (int) playoutResult[0];
+        double sum = playoutResult[1];
+        double squaredSum = playoutResult[2];
+        double discount = ps.getDiscountFactor();
+        Node tempNode = nodeToExplore;
+        while (tempNode != null) {
+            tempNode.getStatistics().addBatch(count, sum, squaredSum);
+            tempNode.addEdgeVisits(count);
+            if (sharedTree)
+                tempNode.getStatistics().removeVirtualLoss();
+            if (tempNode.isOutcome()) {
+                // the chance node above gets reward + discount * value for
+                // each playout, applied to the sums of the whole batch
+                double r = tempNode.getOutcomeReward();
+                squaredSum = count * r * r + 2 * r * discount * sum + discount * discount * squaredSum;
+                sum = count * r + discount * sum;
+            }
+            tempNode = tempNode.getParent();
+        }
+    }
 
-        MoveSimulator ms = new MoveSimulator();
-        State simResult = ms.performA1(ps, node);
+    /**
+     * Run the configured number of playouts from a state, on the playout pool
+     * when leaf parallelism is enabled. The expectation evaluator instead
+     * counts as a single playout scoring the exact expected reward.
+     *
+     * @return {count, reward sum, squared reward sum} of the playouts
+     */
+    private double[] simulatePlayouts(State state, RandomSource random) {
+        if (expectationEvaluator != null) {
+            double value = expectationEvaluator.evaluate(state);
+            return new double[] {1, value, value * value};
+        }
+        int count = Math.max(1, config.getBatchSize());
+        if (playoutPool != null && count > 1)
+            return playoutPool.invoke(new PlayoutBatch(state, count, random));
+        return runPlayouts(state, count, random);
+    }
 
-        if (simResult.isInBreakdownCondition()){
-            reward = - ps.getRepairTime();
-        } else if (simResult.isInSlipCondition()){
-            reward = - ps.getRepairTime();
-        } else {
-            reward = simResult.getPos() - node.state.getPos();
+    private double[] runPlayouts(State state, int count, RandomSource random) {
+        double sum = 0;
+        double squaredSum = 0;
+        ScratchState scratch = new ScratchState();
+        for (int i = 0; i < count; i++) {
+            double reward = rolloutSimulator.rollout(state, scratch, random);
+            sum += reward;
+            squaredSum += reward * reward;
+        }
+        return new double[] {count, sum, squaredSum};
+    }
+
+    /**
+     * A batch of playouts from one state, split in halves over the pool until
+     * the pieces are small enough to run directly
+     */
+    private class PlayoutBatch extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+        private static final int MIN_SPLIT = 4;
+        private final State state;
+        private final int count;
+        private final RandomSource random;
+
+        PlayoutBatch(State state, int count, RandomSource random) {
+            this.state = state;
+            this.count = count;
+            this.random = random;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (count <= MIN_SPLIT)
+                return runPlayouts(state, count, random);
+            int half = count / 2;
+            PlayoutBatch left = new PlayoutBatch(state, half, random.split());
+            left.fork();
+            double[] result = new PlayoutBatch(state, count - half, random).compute();
+            double[] leftResult = left.join();
+            for (int i = 0; i < result.length; i++)
+                result[i] += leftResult[i];
+            return result;
         }
-        return 0.9*reward;
     }
 
     public List<Node> getPossibleChildren(Node node) {
-        List<ActionType> availableActions = ps.getLevel().getAvailableActions();
+        return getPossibleChildren(node, null);
+    }
+
+    /**
+     * Generate the children of a node, sharing their statistics through the
+     * transposition table if one is given
+     */
+    private List<Node> getPossibleChildren(Node node, TranspositionTable table) {
         List<Node> possibleNodes = new ArrayList<>();
-        State s = node.getState();
+        forEachPossibleAction(node.getState(), (action, nextState) -> {
+            Node tmpNode = new Node();
+            tmpNode.setParent(node);
+            tmpNode.setAction(action);
+            tmpNode.setState(nextState);
+            if (table != null)
+                tmpNode.setStatistics(table.get(TranspositionTable.actionKey(ps, nextState, Rewards.actionSteps(action))));
+            possibleNodes.add(tmpNode);
+        });
+        node.setChildArray(possibleNodes);
+        return possibleNodes;
+    }
 
-        Terrain terrain = ps.getEnvironmentMap()[s.getPos() - 1];
-        String car = s.getCarType();
-        TirePressure pressure = s.getTirePressure();
+    /**
+     * Generate every action worth trying in state s together with the state
+     * it leads to before the move that follows it
+     *
+     * @param s the state to act in
+     * @param children receives each action and its resulting state
+     */
+    void forEachPossibleAction(State s, BiConsumer<Action, State> children) {
+        forEachPossibleAction(PackedState.pack(ps, s),
+                (action, nextKey) -> children.accept(action, PackedState.unpack(ps, nextKey)));
+    }
 
-        // get fuel consumption
-        int terrainIndex = ps.getTerrainIndex(terrain);
-        int carIndex = ps.getCarIndex(car);
-        int fuelConsumption = ps.getFuelUsage()[terrainIndex][carIndex];
+    /**
+     * Generate every action worth trying in a packed state together with the
+     * packed state it leads to, without allocating states
+     *
+     * @param key the packed state to act in
+     * @param children receives each action and its resulting packed state
+     */
+    void forEachPossibleAction(long key, ObjLongConsumer<Action> children) {
+        List<ActionType> availableActions = ps.getLevel().getAvailableActions();
 
-        if (pressure == TirePressure.FIFTY_PERCENT) {
-            fuelConsumption *= 3;
-        } else if (pressure == TirePressure.SEVENTY_FIVE_PERCENT) {
-            fuelConsumption *= 2;
-        }
-        int currentFuel = s.getFuel();
+        int carIndex = PackedState.carId(key);
+        TirePressure pressure = PackedState.tirePressure(key);
+
+        int fuelConsumption = ps.getFuelTable().getConsumption(PackedState.pos(key), carIndex, pressure);
+        int currentFuel = PackedState.fuel(key);
         if (fuelConsumption > currentFuel) {
             for (int i = 0; i < ps.getCT(); i++) {
-                Node tmpNode = new Node();
-                tmpNode.setParent(node);
-                tmpNode.setAction(new Action(ActionType.CHANGE_CAR,ps.getCarOrder().get(i)));
-                tmpNode.setState(s.changeCarType(ps.getCarOrder().get(i)));
-                if (!ps.getCarOrder().get(i).equals(node.state.getCarType())) {
-                    possibleNodes.add(tmpNode);
+                if (i != carIndex) {
+                    children.accept(new Action(ActionType.CHANGE_CAR, ps.getCarOrder().get(i)),
+                            PackedState.changeCarType(key, i));
                 }
             }
         } else {
             for (ActionType a : availableActions ) {
                 if (a.getActionNo() == 1) {
-                    Node tmpNode = new Node();
-                    tmpNode.setParent(node);
-                    tmpNode.setAction(new Action(a));
-                    tmpNode.setState(s);
-                    possibleNodes.add(tmpNode);
+                    children.accept(new Action(a), key);
                 } else if (a.getActionNo() == 2) {
                     for (int i = 0; i < ps.getCT(); i++) {
-                        Node tmpNode = new Node();
-                        tmpNode.setParent(node);
-                        tmpNode.setAction(new Action(a,ps.getCarOrder().get(i)));
-                        tmpNode.setState(s.changeCarType(ps.getCarOrder().get(i)));
-                        if (!ps.getCarOrder().get(i).equals(node.state.getCarType())) {
-                            possibleNodes.add(tmpNode);
+                        if (i != carIndex) {
+                            children.accept(new Action(a, ps.getCarOrder().get(i)), PackedState.changeCarType(key, i));
                         }
                     }
                 } else if (a.getActionNo() == 3) {
+                    int driverIndex = PackedState.driverId(key);
                     for (int i = 0; i < ps.getDT(); i++) {
-                        Node tmpNode = new Node();
-                        tmpNode.setParent(node);
-                        tmpNode.setAction(new Action(a,ps.getDriverOrder().get(i)));
-                        tmpNode.setState(s.changeDriver(ps.getDriverOrder().get(i)));
-                        if (!ps.getDriverOrder().get(i).equals(node.state.getDriver())) {
-                            possibleNodes.add(tmpNode);
+                        if (i != driverIndex) {
+                            children.accept(new Action(a, ps.getDriverOrder().get(i)), PackedState.changeDriver(key, i));
                         }
                     }
                 } else if (a.getActionNo() == 4) {
-                    for (int i = 0; i < ps.NUM_TYRE_MODELS; i++) {
-                        Node tmpNode = new Node();
-                        tmpNode.setParent(node);
-                        tmpNode.setAction(new Action(a,ps.getTireOrder().get(i)));
-                        tmpNode.setState(s.changeTires(ps.getTireOrder().get(i)));
-                        if (ps.getTireOrder().get(i) != node.state.getTireModel()) {
-                            possibleNodes.add(tmpNode);
+                    for (int i = 0; i < ProblemSpec.NUM_TYRE_MODELS; i++) {
+                        Tire newTire = ps.getTireOrder().get(i);
+                        if (newTire != PackedState.tireModel(key)) {
+                            children.accept(new Action(a, newTire), PackedState.changeTires(key, newTire));
                         }
                     }
                 } else if (a.getActionNo() == 6) {
-                    TirePressure NewPressure = TirePressure.FIFTY_PERCENT;
-                    if (NewPressure != node.state.getTirePressure()) {
-                        Node tmpNode = new Node();
-                        tmpNode.setParent(node);
-                        tmpNode.setAction(new Action(a,NewPressure));
-                        tmpNode.setState(s.changeTirePressure(TirePressure.FIFTY_PERCENT));
-                        possibleNodes.add(tmpNode);
-                    }
-                    NewPressure = TirePressure.SEVENTY_FIVE_PERCENT;
-                    if (NewPressure != node.state.getTirePressure()) {
-                        Node tmpNode = new Node();
-                        tmpNode.setParent(node);
-                        tmpNode.setAction(new Action(a,NewPressure));
-                        tmpNode.setState(s.changeTirePressure(TirePressure.SEVENTY_FIVE_PERCENT));
-                        possibleNodes.add(tmpNode);
-                    }
-                    NewPressure = TirePressure.ONE_HUNDRED_PERCENT;
-                    if (NewPressure != node.state.getTirePressure()) {
-                        Node tmpNode = new Node();
-                        tmpNode.setParent(node);
-                        tmpNode.setAction(new Action(a,NewPressure));
-                        tmpNode.setState(s.changeTirePressure(TirePressure.ONE_HUNDRED_PERCENT));
-                        possibleNodes.add(tmpNode);
+                    for (TirePressure newPressure : new TirePressure[] {TirePressure.FIFTY_PERCENT,
+                            TirePressure.SEVENTY_FIVE_PERCENT, TirePressure.ONE_HUNDRED_PERCENT}) {
+                        if (newPressure != pressure) {
+                            children.accept(new Action(a, newPressure), PackedState.changeTirePressure(key, newPressure));
+                        }
                     }
                 }
 
             }
         }
-        node.setChildArray(possibleNodes);
-        return possibleNodes;
     }
-
     private int increaseStep(ProblemSpec ps, State s, Action a) {
         if (s.isInSlipCondition())
             return ps.getSlipRecoveryTime();
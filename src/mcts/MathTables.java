@@ -0,0 +1,41 @@
+package mcts;
+
+/**
+ * Lookup tables for the logarithms and square roots that selection policies
+ * need on every iteration. Visit counts beyond the table fall back to Math.
+ */
+final class MathTables {
+
+    private static final int SIZE = 1 << 16;
+    private static final double[] LOG = new double[SIZE];
+    private static final double[] SQRT_LOG = new double[SIZE];
+    private static final double[] INV_SQRT = new double[SIZE];
+
+    static {
+        LOG[0] = Double.NEGATIVE_INFINITY;
+        INV_SQRT[0] = Double.POSITIVE_INFINITY;
+        for (int i = 1; i < SIZE; i++) {
+            LOG[i] = Math.log(i);
+            SQRT_LOG[i] = Math.sqrt(LOG[i]);
+            INV_SQRT[i] = 1.0 / Math.sqrt(i);
+        }
+    }
+
+    private MathTables() {
+    }
+
+    /** ln(n) **/
+    static double log(int n) {
+        return n < SIZE ? LOG[n] : Math.log(n);
+    }
+
+    /** sqrt(ln(n)), 0 for n = 0 **/
+    static double sqrtLog(int n) {
+        return n < SIZE ? SQRT_LOG[n] : Math.sqrt(Math.log(n));
+    }
+
+    /** 1 / sqrt(n) **/
+    static double invSqrt(int n) {
+        return n < SIZE ? INV_SQRT[n] : 1.0 / Math.sqrt(n);
+    }
+}
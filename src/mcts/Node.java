@@ -1,51 +1,47 @@
 package mcts;
 
 import problem.Action;
-import problem.ActionType;
-import problem.Level;
-import problem.TirePressure;
+import simulator.RandomSource;
 import simulator.State;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Node {
     public State state;
     public Node parent;
-    public List<Node> childArray;
-    public double reward;
-    public int count;
+    /** Published once fully built so other search threads never see a partial list **/
+    public volatile List<Node> childArray;
+    private NodeStatistics stats = new NodeStatistics();
+    /** Visits through this node, counted apart from the statistics as those
+     * may be shared with other nodes of the same state **/
+    private final AtomicInteger edgeVisits = new AtomicInteger();
     public Action action;
+    /** Reward of the move that led to this node, if it is a move outcome **/
+    private double outcomeReward;
 
     public Node() {
         this.state = null;
         this.parent = null;
         this.childArray = null;
-        this.reward = 0;
-        this.count = 0;
     }
 
     public Node(State state) {
         this.state = state;
         this.childArray = new ArrayList<>();
-        this.reward = 0;
-        this.count = 0;
     }
 
     public Node(State state, Node parent, List<Node> childArray) {
         this.state = state;
         this.parent = parent;
         this.childArray = childArray;
-        this.reward = 0;
-        this.count = 0;
     }
 
     public Node(Node node) {
         this.childArray = new ArrayList<>();
-        this.reward = 0;
-        this.count = 0;
         State s = node.getState();
         this.state = new State( s.getPos(),
                 s.isInSlipCondition(),
@@ -87,10 +83,8 @@ public class Node {
         this.childArray = childArray;
     }
 
-    public Node getRandomChildNode() {
-        int noOfPossibleMoves = this.childArray.size();
-        int selectRandom = (int) (Math.random() * noOfPossibleMoves);
-        return this.childArray.get(selectRandom);
+    public Node getRandomChildNode(RandomSource random) {
+        return this.childArray.get(random.nextInt(this.childArray.size()));
     }
 
     public Node getChildWithMaxScore() {
@@ -99,23 +93,56 @@ public class Node {
         }));
     }
 
-    public int getVisitCount() { return count; }
+    public NodeStatistics getStatistics() { return stats; }
 
-    public void setVisitCount(int visitCount) { this.count = visitCount; }
+    /**
+     * Use statistics shared with other nodes, e.g. from a transposition table.
+     * Only call this before the node is visible to other search threads.
+     */
+    public void setStatistics(NodeStatistics stats) { this.stats = stats; }
 
-    public double getWinScore() { return reward; }
+    public int getVisitCount() { return stats.getVisits(); }
 
-    public void setWinScore(double winScore) { this.reward = winScore; }
+    public void setVisitCount(int visitCount) { stats.setVisits(visitCount); }
 
-    public void incrementVisit() { this.count++; }
+    public double getWinScore() { return stats.getReward(); }
+
+    public void setWinScore(double winScore) { stats.setReward(winScore); }
+
+    public void incrementVisit() { stats.incrementVisits(); }
 
     public void addScore(double score) {
-        if (this.reward != Integer.MIN_VALUE)
-            this.reward += score;
+        if (stats.getReward() != Integer.MIN_VALUE)
+            stats.addReward(score);
     }
 
+    public int getEdgeVisits() { return edgeVisits.get(); }
+
+    public void addEdgeVisits(int count) { edgeVisits.addAndGet(count); }
+
     public void setAction(Action a) { this.action = a; }
 
     public Action getAction() { return this.action; }
 
+    public double getOutcomeReward() { return outcomeReward; }
+
+    public void setOutcomeReward(double outcomeReward) { this.outcomeReward = outcomeReward; }
+
+    /**
+     * Whether this node is a sampled move outcome below an action node
+     */
+    public boolean isOutcome() { return action == null && parent != null; }
+
+    /**
+     * Add a child by replacing the child list, so threads iterating over the
+     * old list are not disturbed
+     *
+     * @param child the child to add
+     */
+    public synchronized void addChild(Node child) {
+        List<Node> children = childArray == null ? new ArrayList<>() : new ArrayList<>(childArray);
+        children.add(child);
+        childArray = children;
+    }
+
 } 
\ No newline at end of file
@@ -0,0 +1,201 @@
+package mcts;
+
+import problem.Action;
+import simulator.PackedState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search tree stored as parallel primitive arrays instead of one object per
+ * node. A node is an index into the arrays, the children of a node occupy a
+ * contiguous block starting at its first child, and states are packed with
+ * {@link PackedState}. The arrays grow in chunks and are reused after a reset, so
+ * selection and back-propagation never allocate.
+ *
+ * Not thread safe, every worker needs its own pool.
+ */
+public class NodePool {
+
+    /** Number of nodes the arrays grow by when full **/
+    private static final int CHUNK = 4096;
+    /** Child count of a node that has not been expanded yet **/
+    private static final int UNEXPANDED = -1;
+
+    private int size;
+    private int[] visits;
+    private double[] reward;
+    private double[] squaredReward;
+    private int[] parent;
+    private int[] firstChild;
+    private int[] childCount;
+    private int[] action;
+    private long[] state;
+
+    /** Actions seen so far, nodes store the index of their action in here **/
+    private final List<Action> actions = new ArrayList<>();
+    private final Map<String, Integer> actionIds = new HashMap<>();
+
+    public NodePool() {
+        visits = new int[CHUNK];
+        reward = new double[CHUNK];
+        squaredReward = new double[CHUNK];
+        parent = new int[CHUNK];
+        firstChild = new int[CHUNK];
+        childCount = new int[CHUNK];
+        action = new int[CHUNK];
+        state = new long[CHUNK];
+    }
+
+    /**
+     * Drop all nodes but keep the arrays for the next search
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Reset the pool and add a root node
+     *
+     * @param rootState packed state of the root
+     * @return index of the root
+     */
+    public int addRoot(long rootState) {
+        reset();
+        return add(-1, -1, rootState);
+    }
+
+    /**
+     * Mark a node as expanded, its children must be added with addChild
+     * before any other node is expanded
+     *
+     * @param node the node being expanded
+     */
+    public void beginChildren(int node) {
+        firstChild[node] = size;
+        childCount[node] = 0;
+    }
+
+    /**
+     * Add the next child of a node that is being expanded
+     *
+     * @param node the parent node
+     * @param a the action leading to the child
+     * @param childState packed state of the child
+     * @return index of the child
+     */
+    public int addChild(int node, Action a, long childState) {
+        Integer id = actionIds.get(a.getText());
+        if (id == null) {
+            id = actions.size();
+            actions.add(a);
+            actionIds.put(a.getText(), id);
+        }
+        childCount[node]++;
+        return add(node, id, childState);
+    }
+
+    private int add(int parentNode, int actionId, long nodeState) {
+        if (size == visits.length) {
+            grow();
+        }
+        int node = size++;
+        visits[node] = 0;
+        reward[node] = 0;
+        squaredReward[node] = 0;
+        parent[node] = parentNode;
+        firstChild[node] = -1;
+        childCount[node] = UNEXPANDED;
+        action[node] = actionId;
+        state[node] = nodeState;
+        return node;
+    }
+
+    private void grow() {
+        int capacity = visits.length + CHUNK;
+        visits = Arrays.copyOf(visits, capacity);
+        reward = Arrays.copyOf(reward, capacity);
+        squaredReward = Arrays.copyOf(squaredReward, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+        action = Arrays.copyOf(action, capacity);
+        state = Arrays.copyOf(state, capacity);
+    }
+
+    /**
+     * Record a batch of visits on a node and all of its ancestors
+     *
+     * @param node the node the playouts started from
+     * @param count number of playouts
+     * @param rewardSum sum of the playout rewards
+     * @param squaredRewardSum sum of the squared playout rewards
+     */
+    public void backPropagate(int node, int count, double rewardSum, double squaredRewardSum) {
+        for (int n = node; n != -1; n = parent[n]) {
+            visits[n] += count;
+            reward[n] += rewardSum;
+            squaredReward[n] += squaredRewardSum;
+        }
+    }
+
+    /**
+     * Find the most visited child of a node
+     *
+     * @param node the parent node
+     * @return index of the child, or -1 if there are no children
+     */
+    public int getChildWithMaxVisits(int node) {
+        int best = -1;
+        int end = firstChild[node] + Math.max(0, childCount[node]);
+        for (int c = firstChild[node]; c < end; c++) {
+            if (best == -1 || visits[c] > visits[best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    public boolean isExpanded(int node) {
+        return childCount[node] != UNEXPANDED;
+    }
+
+    public int getVisits(int node) {
+        return visits[node];
+    }
+
+    public double getReward(int node) {
+        return reward[node];
+    }
+
+    public double getSquaredReward(int node) {
+        return squaredReward[node];
+    }
+
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int getChildCount(int node) {
+        return Math.max(0, childCount[node]);
+    }
+
+    public long getState(int node) {
+        return state[node];
+    }
+
+    public Action getAction(int node) {
+        return action[node] == -1 ? null : actions.get(action[node]);
+    }
+}
@@ -0,0 +1,101 @@
+package mcts;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Visit count and reward sum of a node. All updates are lock free so several
+ * threads can back up their results through the same node, and virtual losses
+ * mark visits that are still in flight.
+ */
+public class NodeStatistics {
+
+    /** Number of completed visits **/
+    private final AtomicInteger visits = new AtomicInteger();
+    /** Sum of rewards, stored as the bits of a double **/
+    private final AtomicLong rewardBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+    /** Sum of squared rewards, for the variance of the node's value **/
+    private final AtomicLong squaredRewardBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+    /** Number of threads currently descending through the node **/
+    private final AtomicInteger virtualLosses = new AtomicInteger();
+
+    public int getVisits() {
+        return visits.get();
+    }
+
+    public void setVisits(int visitCount) {
+        visits.set(visitCount);
+    }
+
+    public void incrementVisits() {
+        visits.incrementAndGet();
+    }
+
+    public double getReward() {
+        return Double.longBitsToDouble(rewardBits.get());
+    }
+
+    public void setReward(double reward) {
+        rewardBits.set(Double.doubleToRawLongBits(reward));
+    }
+
+    /**
+     * Add to the reward sum, retrying until no other thread got in between
+     *
+     * @param reward the reward to add
+     */
+    public void addReward(double reward) {
+        add(rewardBits, reward);
+    }
+
+    public double getSquaredReward() {
+        return Double.longBitsToDouble(squaredRewardBits.get());
+    }
+
+    /**
+     * Record a batch of visits in one go
+     *
+     * @param count number of visits in the batch
+     * @param rewardSum sum of the rewards of the batch
+     * @param squaredRewardSum sum of the squared rewards of the batch
+     */
+    public void addBatch(int count, double rewardSum, double squaredRewardSum) {
+        visits.addAndGet(count);
+        add(rewardBits, rewardSum);
+        add(squaredRewardBits, squaredRewardSum);
+    }
+
+    /**
+     * Sample variance of the rewards seen so far
+     *
+     * @return the variance, or 0 with less than two visits
+     */
+    public double getVariance() {
+        int n = visits.get();
+        if (n < 2) {
+            return 0;
+        }
+        double mean = getReward() / n;
+        return Math.max(0, (getSquaredReward() - n * mean * mean) / (n - 1));
+    }
+
+    private static void add(AtomicLong bits, double value) {
+        long prev, next;
+        do {
+            prev = bits.get();
+            next = Double.doubleToRawLongBits(Double.longBitsToDouble(prev) + value);
+        } while (!bits.compareAndSet(prev, next));
+    }
+
+    public int getVirtualLosses() {
+        return virtualLosses.get();
+    }
+
+    public void addVirtualLoss() {
+        virtualLosses.incrementAndGet();
+    }
+
+    public void removeVirtualLoss() {
+        virtualLosses.decrementAndGet();
+    }
+}
@@ -0,0 +1,77 @@
+package mcts;
+
+import problem.Action;
+import problem.ActionType;
+import problem.ProblemSpec;
+import simulator.State;
+
+/**
+ * Rewards the search assigns to actions and moves. Every step is worth 0.9,
+ * gained for each cell of progress and lost for each step spent on anything
+ * else.
+ */
+final class Rewards {
+
+    /** Value of one step **/
+    private static final double STEP = 0.9;
+
+    private Rewards() {
+    }
+
+    /**
+     * Reward of the action taken before a move. Every step spent on something
+     * other than moving costs as much as a cell of progress is worth.
+     *
+     * @param a the action
+     * @return 0 for MOVE, a penalty for the steps any other action takes
+     */
+    static double actionReward(Action a) {
+        return stepsReward(actionSteps(a));
+    }
+
+    /**
+     * Penalty for spending a number of steps without moving
+     */
+    static double stepsReward(int steps) {
+        return -STEP * steps;
+    }
+
+    /**
+     * Number of steps an action takes before the move that follows it
+     */
+    static int actionSteps(Action a) {
+        if (a.getActionType() == ActionType.MOVE)
+            return 0;
+        if (a.getActionType() == ActionType.ADD_FUEL)
+            return (int) Math.ceil(a.getFuel() / (float) 10);
+        return 1;
+    }
+
+    /**
+     * Reward of a single move, the distance travelled or a penalty for
+     * slipping or breaking down
+     *
+     * @param before state the move started from
+     * @param after state returned by TransitionKernel.move
+     * @return reward of the move
+     */
+    static double moveReward(ProblemSpec ps, State before, State after) {
+        if (after.isInBreakdownCondition())
+            return breakdownReward(ps);
+        if (after.isInSlipCondition())
+            return slipReward(ps);
+        return progressReward(after.getPos() - before.getPos());
+    }
+
+    static double progressReward(int distance) {
+        return STEP * distance;
+    }
+
+    static double slipReward(ProblemSpec ps) {
+        return -STEP * ps.getSlipRecoveryTime();
+    }
+
+    static double breakdownReward(ProblemSpec ps) {
+        return -STEP * ps.getRepairTime();
+    }
+}
@@ -0,0 +1,154 @@
+package mcts;
+
+import problem.ActionType;
+import problem.ProblemSpec;
+import simulator.RandomSource;
+import simulator.ScratchState;
+import simulator.State;
+import simulator.TransitionKernel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Plays a leaf out for several decisions with a fast default policy, so the
+ * search sees consequences like running out of fuel a few cells later. The
+ * rollout runs on a ScratchState that the TransitionKernel updates in place.
+ *
+ * Rewards are those of the tree, each decision discounted once more than the
+ * one before it. The rollout ends at the goal, after the horizon, or when the
+ * policy has no way to continue.
+ */
+class RolloutSimulator {
+
+    private final ProblemSpec ps;
+    private final TransitionKernel kernel;
+    private final SearchConfig.RolloutPolicy policy;
+    private final int horizon;
+    private final double discount;
+    private final boolean canAddFuel;
+    private final boolean canChangeCar;
+    /** Car indices ordered by the expected reward of a move, best first **/
+    private final int[] carsByReward;
+
+    /**
+     * @param policy what to do before each move
+     * @param horizon maximum number of decisions per rollout, at least 1
+     */
+    RolloutSimulator(ProblemSpec ps, SearchConfig.RolloutPolicy policy, int horizon) {
+        this.ps = ps;
+        this.policy = policy;
+        this.horizon = Math.max(1, horizon);
+        this.discount = ps.getDiscountFactor();
+        this.kernel = new TransitionKernel(ps);
+        List<ActionType> available = ps.getLevel().getAvailableActions();
+        this.canAddFuel = available.contains(ActionType.ADD_FUEL);
+        this.canChangeCar = available.contains(ActionType.CHANGE_CAR);
+        List<String> cars = new ArrayList<>(ps.getCarOrder());
+        cars.sort(Comparator.comparingDouble(this::expectedCarReward).reversed());
+        this.carsByReward = new int[cars.size()];
+        for (int i = 0; i < carsByReward.length; i++)
+            carsByReward[i] = ps.getCarIndex(cars.get(i));
+    }
+
+    /**
+     * @param start state of the leaf, before its move
+     * @param scratch state the rollout is played on, overwritten
+     * @return discounted reward of the rollout
+     */
+    double rollout(State start, ScratchState scratch, RandomSource random) {
+        scratch.load(ps, start);
+        return rollout(scratch, random);
+    }
+
+    /**
+     * @param start packed state of the leaf, before its move
+     * @param scratch state the rollout is played on, overwritten
+     * @return discounted reward of the rollout
+     */
+    double rollout(long start, ScratchState scratch, RandomSource random) {
+        scratch.load(start);
+        return rollout(scratch, random);
+    }
+
+    private double rollout(ScratchState scratch, RandomSource random) {
+        double value = 0;
+        double weight = 1;
+        for (int decision = 0; decision < horizon && scratch.pos < ps.getN(); decision++) {
+            double reward = 0;
+            if (kernel.getFuelConsumption(scratch) > scratch.fuel) {
+                if (policy != SearchConfig.RolloutPolicy.HEURISTIC)
+                    break;
+                int steps = refuel(scratch);
+                if (steps < 0)
+                    break;
+                reward = Rewards.stepsReward(steps);
+                if (kernel.getFuelConsumption(scratch) > scratch.fuel)
+                    break;
+            }
+            reward += move(scratch, random);
+            value += weight * reward;
+            weight *= discount;
+        }
+        return value;
+    }
+
+    private double move(ScratchState scratch, RandomSource random) {
+        int before = scratch.pos;
+        int move = kernel.move(scratch, random);
+        scratch.clearConditions();
+        if (move == ProblemSpec.SLIP)
+            return Rewards.slipReward(ps);
+        if (move == ProblemSpec.BREAKDOWN)
+            return Rewards.breakdownReward(ps);
+        return Rewards.progressReward(scratch.pos - before);
+    }
+
+    /**
+     * Get fuel the cheapest way the level allows, changing to the best other
+     * car if that takes fewer steps than adding fuel. Only the fuel needed to
+     * drive the rest of the track one cell at a time is added, in steps of 10.
+     *
+     * @return number of steps taken, -1 if the level allows neither
+     */
+    private int refuel(ScratchState scratch) {
+        int fuelToAdd = 0;
+        int fuelSteps = Integer.MAX_VALUE;
+        if (canAddFuel) {
+            int needed = ps.getFuelTable().getFuelToReach(scratch.pos, ps.getN(),
+                    scratch.car, scratch.pressure) - scratch.fuel;
+            fuelSteps = TransitionKernel.fuelSteps(Math.max(0, needed));
+            fuelToAdd = Math.min(10 * fuelSteps, ProblemSpec.FUEL_MAX - scratch.fuel);
+            fuelSteps = TransitionKernel.fuelSteps(fuelToAdd);
+        }
+        if (canChangeCar && fuelSteps > 1) {
+            for (int car : carsByReward) {
+                if (car != scratch.car) {
+                    scratch.changeCarType(car);
+                    return 1;
+                }
+            }
+        }
+        if (canAddFuel) {
+            scratch.addFuel(fuelToAdd);
+            return fuelSteps;
+        }
+        return -1;
+    }
+
+    private double expectedCarReward(String car) {
+        double[] moveProbs = ps.getCarMoveProbability().get(car);
+        double reward = 0;
+        for (int k = 0; k < ProblemSpec.CAR_MOVE_RANGE; k++) {
+            int move = ps.convertIndexIntoMove(k);
+            if (move == ProblemSpec.SLIP)
+                reward += moveProbs[k] * Rewards.slipReward(ps);
+            else if (move == ProblemSpec.BREAKDOWN)
+                reward += moveProbs[k] * Rewards.breakdownReward(ps);
+            else
+                reward += moveProbs[k] * Rewards.progressReward(move);
+        }
+        return reward;
+    }
+}
@@ -0,0 +1,348 @@
+package mcts;
+
+import simulator.RandomSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Options controlling how the MCTS searches for the next move.
+ * The defaults search with one thread through the whole tree, with move
+ * outcomes as chance nodes, and keep the subtree of the realised state.
+ * Turning chanceNodes off gives the original search, which selects one level
+ * below the root and builds a new tree for every decision.
+ */
+public class SearchConfig {
+
+    /** How several threads share the work of one search **/
+    public enum Parallelism {
+        /** every thread grows its own tree, root statistics are merged **/
+        ROOT,
+        /** all threads grow one shared tree **/
+        TREE,
+        /** one thread grows the tree, the playouts of each leaf run on a pool **/
+        LEAF
+    }
+
+    /** How the search tree is stored **/
+    public enum Backend {
+        /** one Node object per node, supports tree reuse and every parallel mode **/
+        OBJECT,
+        /** primitive arrays in a NodePool, rebuilt for each decision. Selects
+         * below the root only, single threaded or root parallel, with
+         * playouts and without transpositions **/
+        POOLED
+    }
+
+    /** How the value of a newly reached leaf is estimated **/
+    public enum Evaluator {
+        /** average of randomly sampled moves **/
+        PLAYOUT,
+        /** exact expected reward over every outcome of the next moves **/
+        EXPECTATION
+    }
+
+    /** What a rollout does before each move **/
+    public enum RolloutPolicy {
+        /** keep moving, stop once the fuel runs out **/
+        MOVE,
+        /** keep moving, refuel or change car when the fuel runs out **/
+        HEURISTIC
+    }
+
+    /** Whether to keep the subtree of the realised state between decisions,
+     * needs chance nodes **/
+    private boolean reuseTree = true;
+    /** Number of workers growing independent trees from the same root **/
+    private int threads = 1;
+    /** How the threads split the search when there is more than one **/
+    private Parallelism parallelism = Parallelism.ROOT;
+    /** Reward penalty for each visit still in flight in a shared tree **/
+    private double virtualLoss = 1.0;
+    /** Number of playouts run from each selected leaf **/
+    private int batchSize = 1;
+    /** How the search tree is stored **/
+    private Backend backend = Backend.OBJECT;
+    /** Policy scoring children during selection **/
+    private SelectionPolicy.Type selection = SelectionPolicy.Type.UCB1;
+    /** Exploration constant of the selection policy **/
+    private double exploration = 1.41;
+    /** Whether nodes for the same state share statistics **/
+    private boolean transpositions = false;
+    /** Maximum number of entries in the transposition table **/
+    private int transpositionTableSize = 200000;
+    /** Whether to select beyond the root, with move outcomes as chance nodes **/
+    private boolean chanceNodes = true;
+    /** Maximum number of decisions selection descends through **/
+    private int maxDepth = 50;
+    /** Progressive widening of actions, ceil(k * (n + 1)^alpha) open children **/
+    private double actionWidening = 2.0;
+    private double actionWideningExponent = 0.5;
+    /** Progressive widening of move outcomes, ceil(k * (n + 1)^alpha) outcomes **/
+    private double outcomeWidening = 1.0;
+    private double outcomeWideningExponent = 0.5;
+    /** How leaves are valued **/
+    private Evaluator evaluator = Evaluator.PLAYOUT;
+    /** Number of moves the expectation evaluator looks ahead **/
+    private int evaluatorDepth = 1;
+    /** Maximum number of decisions per rollout, unless set for the level **/
+    private int rolloutHorizon = 1;
+    /** Default policy of rollouts, unless set for the level **/
+    private RolloutPolicy rolloutPolicy = RolloutPolicy.MOVE;
+    /** Rollout settings of single levels, by level number **/
+    private final Map<Integer, Integer> levelRolloutHorizons = new HashMap<>();
+    private final Map<Integer, RolloutPolicy> levelRolloutPolicies = new HashMap<>();
+    /** Seed of the search and the simulator, null for a random seed **/
+    private Long seed = null;
+    /** Generator used by the search and the simulator **/
+    private RandomSource.Type randomType = RandomSource.Type.SPLITTABLE;
+    /** Iterations per worker and decision, 0 to search until the time runs out **/
+    private int iterations = 0;
+    /** Binary trace the simulated episodes are written to, null for no trace **/
+    private String traceFile = null;
+    /** Whether to print details of the search, such as its seed, to stderr **/
+    private boolean verbose = false;
+
+    public boolean isReuseTree() {
+        return reuseTree;
+    }
+
+    public SearchConfig setReuseTree(boolean reuseTree) {
+        this.reuseTree = reuseTree;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public SearchConfig setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public Parallelism getParallelism() {
+        return parallelism;
+    }
+
+    public SearchConfig setParallelism(Parallelism parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public double getVirtualLoss() {
+        return virtualLoss;
+    }
+
+    public SearchConfig setVirtualLoss(double virtualLoss) {
+        this.virtualLoss = virtualLoss;
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public SearchConfig setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public SearchConfig setBackend(Backend backend) {
+        this.backend = backend;
+        return this;
+    }
+
+    public boolean isChanceNodes() {
+        return chanceNodes;
+    }
+
+    public SearchConfig setChanceNodes(boolean chanceNodes) {
+        this.chanceNodes = chanceNodes;
+        return this;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public SearchConfig setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    public double getActionWidening() {
+        return actionWidening;
+    }
+
+    public SearchConfig setActionWidening(double actionWidening) {
+        this.actionWidening = actionWidening;
+        return this;
+    }
+
+    public double getActionWideningExponent() {
+        return actionWideningExponent;
+    }
+
+    public SearchConfig setActionWideningExponent(double actionWideningExponent) {
+        this.actionWideningExponent = actionWideningExponent;
+        return this;
+    }
+
+    public double getOutcomeWidening() {
+        return outcomeWidening;
+    }
+
+    public SearchConfig setOutcomeWidening(double outcomeWidening) {
+        this.outcomeWidening = outcomeWidening;
+        return this;
+    }
+
+    public double getOutcomeWideningExponent() {
+        return outcomeWideningExponent;
+    }
+
+    public SearchConfig setOutcomeWideningExponent(double outcomeWideningExponent) {
+        this.outcomeWideningExponent = outcomeWideningExponent;
+        return this;
+    }
+
+    public boolean isTranspositions() {
+        return transpositions;
+    }
+
+    public SearchConfig setTranspositions(boolean transpositions) {
+        this.transpositions = transpositions;
+        return this;
+    }
+
+    public int getTranspositionTableSize() {
+        return transpositionTableSize;
+    }
+
+    public SearchConfig setTranspositionTableSize(int transpositionTableSize) {
+        this.transpositionTableSize = transpositionTableSize;
+        return this;
+    }
+
+    public SelectionPolicy.Type getSelection() {
+        return selection;
+    }
+
+    public SearchConfig setSelection(SelectionPolicy.Type selection) {
+        this.selection = selection;
+        return this;
+    }
+
+    public double getExploration() {
+        return exploration;
+    }
+
+    public SearchConfig setExploration(double exploration) {
+        this.exploration = exploration;
+        return this;
+    }
+
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    public SearchConfig setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        return this;
+    }
+
+    public int getEvaluatorDepth() {
+        return evaluatorDepth;
+    }
+
+    public SearchConfig setEvaluatorDepth(int evaluatorDepth) {
+        this.evaluatorDepth = evaluatorDepth;
+        return this;
+    }
+
+    /**
+     * @param level the level number
+     * @return rollout horizon of the level, or the default one
+     */
+    public int getRolloutHorizon(int level) {
+        return levelRolloutHorizons.getOrDefault(level, rolloutHorizon);
+    }
+
+    public SearchConfig setRolloutHorizon(int rolloutHorizon) {
+        this.rolloutHorizon = rolloutHorizon;
+        return this;
+    }
+
+    public SearchConfig setRolloutHorizon(int level, int rolloutHorizon) {
+        levelRolloutHorizons.put(level, rolloutHorizon);
+        return this;
+    }
+
+    /**
+     * @param level the level number
+     * @return rollout policy of the level, or the default one
+     */
+    public RolloutPolicy getRolloutPolicy(int level) {
+        return levelRolloutPolicies.getOrDefault(level, rolloutPolicy);
+    }
+
+    public SearchConfig setRolloutPolicy(RolloutPolicy rolloutPolicy) {
+        this.rolloutPolicy = rolloutPolicy;
+        return this;
+    }
+
+    public SearchConfig setRolloutPolicy(int level, RolloutPolicy rolloutPolicy) {
+        levelRolloutPolicies.put(level, rolloutPolicy);
+        return this;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    public SearchConfig setSeed(Long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public RandomSource.Type getRandomType() {
+        return randomType;
+    }
+
+    public SearchConfig setRandomType(RandomSource.Type randomType) {
+        this.randomType = randomType;
+        return this;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public SearchConfig setIterations(int iterations) {
+        this.iterations = iterations;
+        return this;
+    }
+
+    public String getTraceFile() {
+        return traceFile;
+    }
+
+    public SearchConfig setTraceFile(String traceFile) {
+        this.traceFile = traceFile;
+        return this;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public SearchConfig setVerbose(boolean verbose) {
+        this.verbose = verbose;
+        return this;
+    }
+}
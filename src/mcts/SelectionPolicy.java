@@ -0,0 +1,121 @@
+package mcts;
+
+import simulator.RandomSource;
+
+import java.util.List;
+
+/**
+ * Decides which child to descend into during selection. A policy only scores
+ * a single child from its statistics; the argmax over the children is shared
+ * and works without allocating.
+ */
+public interface SelectionPolicy {
+
+    /** The available policies **/
+    enum Type {
+        UCB1,
+        UCB1_TUNED,
+        UCB_V,
+        THOMPSON
+    }
+
+    /**
+     * Score a child, the child with the highest score is selected. Unvisited
+     * children should score positive infinity.
+     *
+     * @param parentVisits visits of the parent node
+     * @param visits visits of the child
+     * @param rewardSum sum of rewards of the child
+     * @param squaredRewardSum sum of squared rewards of the child
+     * @param random random source of the calling worker
+     * @return the score of the child
+     */
+    double score(int parentVisits, int visits, double rewardSum, double squaredRewardSum,
+                 RandomSource random);
+
+    /**
+     * Select among the first count children of a node. Visits still in flight
+     * count as visits that scored -virtualLoss.
+     *
+     * @param children the children of the node
+     * @param count number of children to consider
+     * @param parentVisits visits of the node
+     * @param virtualLoss reward penalty of a visit in flight
+     * @param random random source of the calling worker
+     * @return the selected child
+     */
+    default Node select(List<Node> children, int count, int parentVisits, double virtualLoss,
+                        RandomSource random) {
+        Node best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            Node child = children.get(i);
+            NodeStatistics stats = child.getStatistics();
+            int pending = stats.getVirtualLosses();
+            double score = score(parentVisits, stats.getVisits() + pending,
+                    stats.getReward() - pending * virtualLoss,
+                    stats.getSquaredReward() + pending * virtualLoss * virtualLoss, random);
+            if (best == null || score > bestScore) {
+                best = child;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Select among the children of a node in a node pool
+     *
+     * @param pool the pool holding the tree
+     * @param node index of the node
+     * @param random random source of the calling worker
+     * @return index of the selected child
+     */
+    default int select(NodePool pool, int node, RandomSource random) {
+        int parentVisits = pool.getVisits(node);
+        int first = pool.getFirstChild(node);
+        int end = first + pool.getChildCount(node);
+        int best = first;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int c = first; c < end; c++) {
+            double score = score(parentVisits, pool.getVisits(c), pool.getReward(c),
+                    pool.getSquaredReward(c), random);
+            if (score > bestScore) {
+                best = c;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Create a policy
+     *
+     * @param type which policy
+     * @param exploration exploration constant, scales the exploration term
+     * @return the policy
+     */
+    static SelectionPolicy create(Type type, double exploration) {
+        switch (type) {
+            case UCB1_TUNED:
+                return new UCB1TunedPolicy(exploration);
+            case UCB_V:
+                return new UCBVPolicy(exploration);
+            case THOMPSON:
+                return new ThompsonPolicy(exploration);
+            default:
+                return new UCB1Policy(exploration);
+        }
+    }
+
+    /**
+     * Sample variance from the reward sums, 0 with less than two visits
+     */
+    static double variance(int visits, double rewardSum, double squaredRewardSum) {
+        if (visits < 2) {
+            return 0;
+        }
+        double mean = rewardSum / visits;
+        return Math.max(0, (squaredRewardSum - visits * mean * mean) / (visits - 1));
+    }
+}
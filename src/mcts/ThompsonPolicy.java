@@ -0,0 +1,41 @@
+package mcts;
+
+import simulator.RandomSource;
+
+/**
+ * Thompson sampling with a normal approximation of each child's mean: the
+ * score is a draw from N(mean, c^2 * var / n). Children with less than two
+ * visits use a unit variance.
+ */
+public class ThompsonPolicy implements SelectionPolicy {
+
+    private final double exploration;
+
+    public ThompsonPolicy(double exploration) {
+        this.exploration = exploration;
+    }
+
+    @Override
+    public double score(int parentVisits, int visits, double rewardSum, double squaredRewardSum,
+                        RandomSource random) {
+        if (visits == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double variance = visits < 2 ? 1 : SelectionPolicy.variance(visits, rewardSum, squaredRewardSum);
+        return rewardSum / visits
+                + exploration * Math.sqrt(variance) * MathTables.invSqrt(visits) * gaussian(random);
+    }
+
+    /**
+     * Standard normal draw with the polar method
+     */
+    private static double gaussian(RandomSource random) {
+        double u, v, s;
+        do {
+            u = 2 * random.nextDouble() - 1;
+            v = 2 * random.nextDouble() - 1;
+            s = u * u + v * v;
+        } while (s >= 1 || s == 0);
+        return u * Math.sqrt(-2 * Math.log(s) / s);
+    }
+}
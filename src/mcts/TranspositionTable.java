@@ -0,0 +1,78 @@
+package mcts;
+
+import problem.ProblemSpec;
+import simulator.PackedState;
+import simulator.State;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shares node statistics between nodes that stand for the same situation, so
+ * a state reached through different action orders is only learned once. The
+ * tree becomes a DAG in terms of statistics while the nodes themselves stay a
+ * tree.
+ *
+ * The table holds at most capacity entries and evicts the least recently used
+ * one when full. Nodes keep the statistics they were given, eviction only
+ * means the next node created for that key starts from scratch.
+ */
+public class TranspositionTable {
+
+    /** Marks keys of action nodes as opposed to decision nodes **/
+    private static final long ACTION_NODE = 1L << 63;
+    /** Position of the step cost of the action in action node keys **/
+    private static final int STEPS_SHIFT = 48;
+
+    private final Map<Long, NodeStatistics> entries;
+
+    /**
+     * @param capacity maximum number of entries before the least recently
+     *                 used one is evicted
+     */
+    public TranspositionTable(int capacity) {
+        entries = new LinkedHashMap<Long, NodeStatistics>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, NodeStatistics> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the statistics for a key, creating them if the key is new
+     *
+     * @param key a decisionKey or actionKey
+     * @return the shared statistics
+     */
+    public synchronized NodeStatistics get(long key) {
+        NodeStatistics stats = entries.get(key);
+        if (stats == null) {
+            stats = new NodeStatistics();
+            entries.put(key, stats);
+        }
+        return stats;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Key of a decision node, i.e. a state in which an action is chosen
+     */
+    static long decisionKey(ProblemSpec ps, State s) {
+        return PackedState.pack(ps, s);
+    }
+
+    /**
+     * Key of an action node. Actions leading to the same state are only
+     * interchangeable if they take the same number of steps.
+     *
+     * @param s the state after the action, before the move
+     * @param steps number of steps the action takes
+     */
+    static long actionKey(ProblemSpec ps, State s, int steps) {
+        return PackedState.pack(ps, s) | (long) steps << STEPS_SHIFT | ACTION_NODE;
+    }
+}
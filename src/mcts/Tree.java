@@ -1,5 +1,8 @@
 package mcts;
 
+import problem.Action;
+import simulator.State;
+
 public class Tree {
     Node root;
 
@@ -23,4 +26,46 @@ public class Tree {
         parent.getChildArray().add(child);
     }
 
-}
\ No newline at end of file
+    /**
+     * Move the root to the move outcome reached by taking the given action
+     * from the current root and ending up in the realised state. The subtree
+     * below the new root is kept, everything else is dropped so it can be
+     * collected.
+     *
+     * @param a the action that was chosen from the current root
+     * @param realised the state returned by the simulator
+     * @return true if a matching outcome was found, false otherwise
+     */
+    public boolean reRoot(Action a, State realised) {
+        Node chosen = null;
+        if (root.getChildArray() != null) {
+            for (Node child : root.getChildArray()) {
+                if (a.equals(child.getAction())) {
+                    chosen = child;
+                    break;
+                }
+            }
+        }
+        if (chosen == null || chosen.getChildArray() == null) {
+            return false;
+        }
+
+        // slipping and not moving end in the same state, take the most
+        // visited of the outcomes that match
+        Node best = null;
+        for (Node outcome : chosen.getChildArray()) {
+            if (outcome.isOutcome() && realised.equals(outcome.getState())
+                    && (best == null || outcome.getEdgeVisits() > best.getEdgeVisits())) {
+                best = outcome;
+            }
+        }
+        if (best == null) {
+            return false;
+        }
+        best.setParent(null);
+        best.setState(realised);
+        root = best;
+        return true;
+    }
+
+}
@@ -0,0 +1,25 @@
+package mcts;
+
+import simulator.RandomSource;
+
+/**
+ * UCB1, mean + c * sqrt(ln(N) / n), the default exploration constant is 1.41.
+ */
+public class UCB1Policy implements SelectionPolicy {
+
+    private final double exploration;
+
+    public UCB1Policy(double exploration) {
+        this.exploration = exploration;
+    }
+
+    @Override
+    public double score(int parentVisits, int visits, double rewardSum, double squaredRewardSum,
+                        RandomSource random) {
+        if (visits == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return rewardSum / visits
+                + exploration * MathTables.sqrtLog(parentVisits) * MathTables.invSqrt(visits);
+    }
+}
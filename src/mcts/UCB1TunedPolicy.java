@@ -0,0 +1,29 @@
+package mcts;
+
+import simulator.RandomSource;
+
+/**
+ * UCB1-Tuned, which bounds the exploration term by the observed variance:
+ *
+ *      mean + c * sqrt(ln(N) / n * min(1/4, var + sqrt(2 ln(N) / n)))
+ */
+public class UCB1TunedPolicy implements SelectionPolicy {
+
+    private final double exploration;
+
+    public UCB1TunedPolicy(double exploration) {
+        this.exploration = exploration;
+    }
+
+    @Override
+    public double score(int parentVisits, int visits, double rewardSum, double squaredRewardSum,
+                        RandomSource random) {
+        if (visits == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double logOverN = MathTables.log(parentVisits) / visits;
+        double varianceBound = SelectionPolicy.variance(visits, rewardSum, squaredRewardSum)
+                + Math.sqrt(2 * logOverN);
+        return rewardSum / visits + exploration * Math.sqrt(logOverN * Math.min(0.25, varianceBound));
+    }
+}
@@ -0,0 +1,29 @@
+package mcts;
+
+import simulator.RandomSource;
+
+/**
+ * UCB-V, an empirical Bernstein bound where c plays the role of the reward
+ * range:
+ *
+ *      mean + sqrt(2 var ln(N) / n) + 3 c ln(N) / n
+ */
+public class UCBVPolicy implements SelectionPolicy {
+
+    private final double exploration;
+
+    public UCBVPolicy(double exploration) {
+        this.exploration = exploration;
+    }
+
+    @Override
+    public double score(int parentVisits, int visits, double rewardSum, double squaredRewardSum,
+                        RandomSource random) {
+        if (visits == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double logOverN = MathTables.log(parentVisits) / visits;
+        double variance = SelectionPolicy.variance(visits, rewardSum, squaredRewardSum);
+        return rewardSum / visits + Math.sqrt(2 * variance * logOverN) + 3 * exploration * logOverN;
+    }
+}
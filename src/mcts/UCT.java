@@ -1,21 +0,0 @@
-package mcts;
-
-import java.util.Collections;
-import java.util.Comparator;
-
-public class UCT {
-
-    public static double uctValue(int totalVisit, double nodeWinScore, int nodeVisit) {
-        if (nodeVisit == 0) {
-            return Integer.MAX_VALUE;
-        }
-        return (nodeWinScore / (double) nodeVisit) + 1.41 * Math.sqrt(Math.log(totalVisit) / (double) nodeVisit);
-    }
-
-    static Node findBestNodeWithUCT(Node node) {
-        int parentVisit = node.getVisitCount();
-        return Collections.max(
-                node.getChildArray(),
-                Comparator.comparing(c -> uctValue(parentVisit, c.getWinScore(), c.getVisitCount())));
-    }
-}
\ No newline at end of file
@@ -1,5 +1,7 @@
 package problem;
 
+import java.util.Objects;
+
 /**
  * An action in the MDP
  */
@@ -178,4 +180,26 @@ public class Action {
     public String getText() {
         return text;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Action)) {
+            return false;
+        }
+        Action other = (Action) o;
+        return actionType == other.actionType
+                && fuel == other.fuel
+                && tireModel == other.tireModel
+                && tirePressure == other.tirePressure
+                && Objects.equals(carType, other.carType)
+                && Objects.equals(driverType, other.driverType);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(actionType, carType, driverType, tireModel, fuel, tirePressure);
+    }
 }
@@ -0,0 +1,77 @@
+package problem;
+
+/**
+ * Fuel used by a move, compiled once for every cell, car and tire pressure,
+ * together with prefix sums along the track so the fuel needed to drive
+ * through a stretch of cells is a subtraction.
+ *
+ * A move uses the fuel of the cell it starts from: the fuel usage of the
+ * terrain and car, times 3 at 50% and times 2 at 75% tire pressure.
+ */
+public class FuelTable {
+
+    private final int N;
+    private final int cars;
+    /** Fuel of a move from cell pos at ((pos - 1) * cars + car) * levels + pressure **/
+    private final int[] consumption;
+    /** Fuel of moving once from each of the cells 1 to i at
+     * (car * levels + pressure) * (N + 1) + i **/
+    private final int[] cumulative;
+
+    /**
+     * Compile the fuel table of a loaded problem
+     *
+     * @param ps the problem spec, with fuel usage and cell terrains loaded
+     */
+    FuelTable(ProblemSpec ps) {
+        this.N = ps.getN();
+        this.cars = ps.getCT();
+        int levels = ProblemSpec.TIRE_PRESSURE_LEVELS;
+        consumption = new int[N * cars * levels];
+        cumulative = new int[cars * levels * (N + 1)];
+        for (int car = 0; car < cars; car++) {
+            for (TirePressure pressure : TirePressure.values()) {
+                int row = (car * levels + pressure.ordinal()) * (N + 1);
+                for (int pos = 1; pos <= N; pos++) {
+                    int fuel = ps.getFuelUsage()[ps.getCellTerrainIndex(pos)][car];
+                    if (pressure == TirePressure.FIFTY_PERCENT) {
+                        fuel *= 3;
+                    } else if (pressure == TirePressure.SEVENTY_FIVE_PERCENT) {
+                        fuel *= 2;
+                    }
+                    consumption[((pos - 1) * cars + car) * levels + pressure.ordinal()] = fuel;
+                    cumulative[row + pos] = cumulative[row + pos - 1] + fuel;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the fuel a move uses
+     *
+     * @param pos the cell the move starts from (1 indexed)
+     * @param carIndex index of the car as it appeared in input
+     * @param pressure the tire pressure
+     * @return fuel consumption of the move
+     */
+    public int getConsumption(int pos, int carIndex, TirePressure pressure) {
+        return consumption[((pos - 1) * cars + carIndex) * ProblemSpec.TIRE_PRESSURE_LEVELS
+                + pressure.ordinal()];
+    }
+
+    /**
+     * Get the fuel needed to get from cell from to cell to moving one cell at
+     * a time, i.e. the fuel of one move from each of the cells from to
+     * to - 1. Longer moves skip cells and need less.
+     *
+     * @param from the starting cell (1 indexed)
+     * @param to the cell to reach, at least from
+     * @param carIndex index of the car as it appeared in input
+     * @param pressure the tire pressure
+     * @return the fuel needed
+     */
+    public int getFuelToReach(int from, int to, int carIndex, TirePressure pressure) {
+        int row = (carIndex * ProblemSpec.TIRE_PRESSURE_LEVELS + pressure.ordinal()) * (N + 1);
+        return cumulative[row + to - 1] - cumulative[row + from - 1];
+    }
+}
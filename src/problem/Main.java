@@ -2,6 +2,12 @@ package problem;
 
 
 import mcts.MCTS;
+import mcts.SearchConfig;
+import mcts.SelectionPolicy;
+import simulator.RandomSource;
+import simulator.SplittableRandomSource;
+import valueiteration.Policy;
+import valueiteration.ValueIteration;
 
 import java.io.IOException;
 import java.util.Locale;
@@ -17,8 +23,49 @@ public class Main {
         try {
             ps = new ProblemSpec(args[0]); //args[0]);
             // System.out.println(ps.toString());
-            MCTS mcts = new MCTS(ps, args[1]);
-            step = mcts.stepCounter;
+            SearchConfig config = new SearchConfig();
+            // solver=valueiteration or solver=policyiteration drives with a
+            // precomputed policy instead of searching
+            String solver = "mcts";
+            int evaluationSweeps = 20;
+            ValueIteration.Schedule schedule = ValueIteration.Schedule.JACOBI;
+            boolean scheduleGiven = false;
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].startsWith("solver=")) {
+                    solver = args[i].substring("solver=".length());
+                } else if (args[i].startsWith("evaluationSweeps=")) {
+                    evaluationSweeps = Integer.parseInt(args[i].substring("evaluationSweeps=".length()));
+                } else if (args[i].startsWith("schedule=")) {
+                    schedule = ValueIteration.Schedule.valueOf(
+                            args[i].substring("schedule=".length()).toUpperCase());
+                    scheduleGiven = true;
+                } else {
+                    parseOption(config, args[i]);
+                }
+            }
+            // only value iteration backs up the states in a chosen order
+            if (scheduleGiven && !solver.equals("valueiteration")) {
+                System.out.println("Option schedule needs solver=valueiteration");
+                System.exit(1);
+            }
+            switch (solver) {
+                case "mcts":
+                    MCTS mcts = new MCTS(ps, args[1], config);
+                    step = mcts.stepCounter;
+                    break;
+                case "valueiteration":
+                case "policyiteration":
+                    RandomSource random = config.getSeed() != null
+                            ? RandomSource.create(config.getRandomType(), config.getSeed())
+                            : new SplittableRandomSource();
+                    Policy policy = new Policy(ps, ValueIteration.DEFAULT_EPSILON, config.getThreads(),
+                            solver.equals("policyiteration") ? evaluationSweeps : 0, schedule);
+                    step = policy.run(args[1], random);
+                    break;
+                default:
+                    System.out.println("Unknown solver " + solver);
+                    System.exit(1);
+            }
         } catch (IOException e) {
             System.out.println("IO Exception occurred");
             System.exit(1);
@@ -28,4 +75,128 @@ public class Main {
         System.out.println("Output created in " + duration + " seconds");
         System.out.println("Duration per step: " + (float) duration / step);
     }
+
+    /**
+     * Apply an optional search setting given on the command line as
+     * key=value, e.g. threads=8
+     *
+     * @param config the search config to update
+     * @param option the command line argument
+     */
+    private static void parseOption(SearchConfig config, String option) {
+        String[] keyValue = option.split("=", 2);
+        if (keyValue.length != 2) {
+            System.out.println("Invalid option " + option + ", expected key=value");
+            System.exit(1);
+        }
+        String value = keyValue[1];
+        // rollout settings can be given for a single level, e.g. rolloutHorizon.3=10
+        String key = keyValue[0];
+        Integer level = null;
+        try {
+            int dot = key.indexOf('.');
+            if (dot >= 0) {
+                level = Integer.parseInt(key.substring(dot + 1));
+                key = key.substring(0, dot);
+                if (!key.equals("rolloutHorizon") && !key.equals("rolloutPolicy")) {
+                    System.out.println("Option " + key + " can't be set for a single level");
+                    System.exit(1);
+                }
+            }
+            switch (key) {
+                case "threads":
+                    int threads = Integer.parseInt(value);
+                    if (threads <= 0) {
+                        threads = Runtime.getRuntime().availableProcessors();
+                    }
+                    config.setThreads(threads);
+                    break;
+                case "parallel":
+                    config.setParallelism(SearchConfig.Parallelism.valueOf(value.toUpperCase()));
+                    break;
+                case "virtualLoss":
+                    config.setVirtualLoss(Double.parseDouble(value));
+                    break;
+                case "batch":
+                    config.setBatchSize(Integer.parseInt(value));
+                    break;
+                case "backend":
+                    config.setBackend(SearchConfig.Backend.valueOf(value.toUpperCase()));
+                    break;
+                case "chanceNodes":
+                    config.setChanceNodes(Boolean.parseBoolean(value));
+                    break;
+                case "maxDepth":
+                    config.setMaxDepth(Integer.parseInt(value));
+                    break;
+                case "actionWidening":
+                    config.setActionWidening(Double.parseDouble(value));
+                    break;
+                case "actionWideningExponent":
+                    config.setActionWideningExponent(Double.parseDouble(value));
+                    break;
+                case "outcomeWidening":
+                    config.setOutcomeWidening(Double.parseDouble(value));
+                    break;
+                case "outcomeWideningExponent":
+                    config.setOutcomeWideningExponent(Double.parseDouble(value));
+                    break;
+                case "transpositions":
+                    config.setTranspositions(Boolean.parseBoolean(value));
+                    break;
+                case "tableSize":
+                    config.setTranspositionTableSize(Integer.parseInt(value));
+                    break;
+                case "selection":
+                    config.setSelection(SelectionPolicy.Type.valueOf(value.toUpperCase()));
+                    break;
+                case "exploration":
+                    config.setExploration(Double.parseDouble(value));
+                    break;
+                case "evaluator":
+                    config.setEvaluator(SearchConfig.Evaluator.valueOf(value.toUpperCase()));
+                    break;
+                case "evaluatorDepth":
+                    config.setEvaluatorDepth(Integer.parseInt(value));
+                    break;
+                case "rolloutHorizon":
+                    if (level == null)
+                        config.setRolloutHorizon(Integer.parseInt(value));
+                    else
+                        config.setRolloutHorizon(level, Integer.parseInt(value));
+                    break;
+                case "rolloutPolicy":
+                    SearchConfig.RolloutPolicy policy = SearchConfig.RolloutPolicy.valueOf(value.toUpperCase());
+                    if (level == null)
+                        config.setRolloutPolicy(policy);
+                    else
+                        config.setRolloutPolicy(level, policy);
+                    break;
+                case "seed":
+                    config.setSeed(Long.parseLong(value));
+                    break;
+                case "random":
+                    config.setRandomType(RandomSource.Type.valueOf(value.toUpperCase()));
+                    break;
+                case "iterations":
+                    config.setIterations(Integer.parseInt(value));
+                    break;
+                case "trace":
+                    config.setTraceFile(value);
+                    break;
+                case "reuse":
+                    config.setReuseTree(Boolean.parseBoolean(value));
+                    break;
+                case "verbose":
+                    config.setVerbose(Boolean.parseBoolean(value));
+                    break;
+                default:
+                    System.out.println("Unknown option " + keyValue[0]);
+                    System.exit(1);
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid value for option " + option);
+            System.exit(1);
+        }
+    }
 }
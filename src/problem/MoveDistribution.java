@@ -0,0 +1,271 @@
+package problem;
+
+/**
+ * The conditional move distribution
+ *
+ *          P(K | C, D, Ti, Te, Pressure)
+ *
+ * compiled once for every combination of terrain, car, driver, tire model
+ * and tire pressure. Looking up a distribution is an array index instead of
+ * recomputing it from the probability maps of the problem spec.
+ *
+ * A combination is addressed by its configuration number, see
+ * getConfiguration. Each configuration holds the normalised probability of
+ * every move index and an alias table (Vose's alias method) so sampling a
+ * move takes one random number and two array reads.
+ */
+public class MoveDistribution {
+
+    private final ProblemSpec ps;
+    private final int cars;
+    private final int drivers;
+    /** P(k | configuration) at configuration * CAR_MOVE_RANGE + k **/
+    private final double[] probabilities;
+    /** Probability of keeping column k of the alias table, same layout **/
+    private final double[] aliasProbability;
+    /** Move index column k falls back to, same layout **/
+    private final int[] alias;
+
+    /**
+     * Compile the move distributions of a loaded problem
+     *
+     * @param ps the problem spec, with all probabilities loaded
+     */
+    MoveDistribution(ProblemSpec ps) {
+        this.ps = ps;
+        this.cars = ps.getCT();
+        this.drivers = ps.getDT();
+        int configurations = ps.getNT() * cars * drivers * ProblemSpec.NUM_TYRE_MODELS
+                * ProblemSpec.TIRE_PRESSURE_LEVELS;
+        probabilities = new double[configurations * ProblemSpec.CAR_MOVE_RANGE];
+        aliasProbability = new double[configurations * ProblemSpec.CAR_MOVE_RANGE];
+        alias = new int[configurations * ProblemSpec.CAR_MOVE_RANGE];
+
+        // calculate priors
+        double priorK = 1.0 / ProblemSpec.CAR_MOVE_RANGE;
+        double priorCar = 1.0 / ps.getCT();
+        double priorDriver = 1.0 / ps.getDT();
+        double priorTire = 1.0 / ProblemSpec.NUM_TYRE_MODELS;
+        double priorTerrain = 1.0 / ps.getNT();
+        double priorPressure = 1.0 / ProblemSpec.TIRE_PRESSURE_LEVELS;
+
+        for (int terrain = 0; terrain < ps.getNT(); terrain++) {
+            for (TirePressure pressure : TirePressure.values()) {
+                double[] pKGivenPressureTerrain = convertSlipProbs(ps.getSlipProbability()[terrain], pressure);
+                double[] pPressureTerrainGivenK = bayesRule(pKGivenPressureTerrain,
+                        (priorTerrain * priorPressure), priorK);
+                for (int car = 0; car < cars; car++) {
+                    double[] pCarGivenK = bayesRule(ps.getCarMoveProbability().get(ps.getCarOrder().get(car)),
+                            priorCar, priorK);
+                    for (int driver = 0; driver < drivers; driver++) {
+                        double[] pDriverGivenK = bayesRule(
+                                ps.getDriverMoveProbability().get(ps.getDriverOrder().get(driver)),
+                                priorDriver, priorK);
+                        for (int tire = 0; tire < ProblemSpec.NUM_TYRE_MODELS; tire++) {
+                            double[] pTireGivenK = bayesRule(
+                                    ps.getTireModelMoveProbability().get(ps.getTireOrder().get(tire)),
+                                    priorTire, priorK);
+                            int offset = getConfiguration(terrain, car, driver, tire, pressure)
+                                    * ProblemSpec.CAR_MOVE_RANGE;
+                            compile(offset, pCarGivenK, pDriverGivenK, pTireGivenK,
+                                    pPressureTerrainGivenK, priorK);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Use the conditional probability formula from the assignment sheet to
+     * fill in the distribution of one configuration
+     */
+    private void compile(int offset, double[] pCarGivenK, double[] pDriverGivenK,
+                         double[] pTireGivenK, double[] pPressureTerrainGivenK, double priorK) {
+        double kProbsSum = 0;
+        for (int k = 0; k < ProblemSpec.CAR_MOVE_RANGE; k++) {
+            double kProb = pCarGivenK[k] * pDriverGivenK[k] *
+                    pTireGivenK[k] * pPressureTerrainGivenK[k] * priorK;
+            kProbsSum += kProb;
+            probabilities[offset + k] = kProb;
+        }
+
+        // Normalize
+        for (int k = 0; k < ProblemSpec.CAR_MOVE_RANGE; k++) {
+            probabilities[offset + k] /= kProbsSum;
+        }
+        compileAlias(offset);
+    }
+
+    /**
+     * Build the alias table of one configuration with Vose's method. Every
+     * column starts with n times the probability of its move; columns below
+     * 1 are topped up from a column above 1, which becomes their alias.
+     */
+    private void compileAlias(int offset) {
+        int n = ProblemSpec.CAR_MOVE_RANGE;
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int k = 0; k < n; k++) {
+            scaled[k] = probabilities[offset + k] * n;
+            if (scaled[k] < 1) {
+                small[smallCount++] = k;
+            } else {
+                large[largeCount++] = k;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            aliasProbability[offset + less] = scaled[less];
+            alias[offset + less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // what is left is 1 up to rounding
+        while (largeCount > 0) {
+            int k = large[--largeCount];
+            aliasProbability[offset + k] = 1;
+            alias[offset + k] = k;
+        }
+        while (smallCount > 0) {
+            int k = small[--smallCount];
+            aliasProbability[offset + k] = 1;
+            alias[offset + k] = k;
+        }
+    }
+
+    /**
+     * Convert the probability of slipping on a given terrain with 50% tire
+     * pressure into a probability list, of move distance versus current
+     * terrain and tire pressure.
+     *
+     * @param slipProb probability of slipping on the terrain and 50%
+     *                 tire pressure
+     * @param pressure the tire pressure
+     * @return list of move probabilities given terrain and pressure
+     */
+    private double[] convertSlipProbs(double slipProb, TirePressure pressure) {
+
+        // Adjust slip probability based on tire pressure
+        if (pressure == TirePressure.SEVENTY_FIVE_PERCENT) {
+            slipProb *= 2;
+        } else if (pressure == TirePressure.ONE_HUNDRED_PERCENT) {
+            slipProb *= 3;
+        }
+        // Make sure new probability is not above max
+        if (slipProb > ProblemSpec.MAX_SLIP_PROBABILITY) {
+            slipProb = ProblemSpec.MAX_SLIP_PROBABILITY;
+        }
+
+        // for each terrain, all other action probabilities are uniform over
+        // remaining probability
+        double[] kProbs = new double[ProblemSpec.CAR_MOVE_RANGE];
+        double leftOver = 1 - slipProb;
+        double otherProb = leftOver / (ProblemSpec.CAR_MOVE_RANGE - 1);
+        for (int i = 0; i < ProblemSpec.CAR_MOVE_RANGE; i++) {
+            if (i == ps.getIndexOfMove(ProblemSpec.SLIP)) {
+                kProbs[i] = slipProb;
+            } else {
+                kProbs[i] = otherProb;
+            }
+        }
+
+        return kProbs;
+    }
+
+    /**
+     * Apply bayes rule to all values in cond probs list.
+     *
+     * @param condProb list of P(B|A)
+     * @param priorA prior probability of parameter A
+     * @param priorB prior probability of parameter B
+     * @return list of P(A|B)
+     */
+    private double[] bayesRule(double[] condProb, double priorA, double priorB) {
+
+        double[] swappedProb = new double[condProb.length];
+
+        for (int i = 0; i < condProb.length; i++) {
+            swappedProb[i] = (condProb[i] * priorA) / priorB;
+        }
+        return swappedProb;
+    }
+
+    /**
+     * Get the configuration number of a combination of indices
+     *
+     * @param terrainIndex index of the terrain as it appeared in input
+     * @param carIndex index of the car as it appeared in input
+     * @param driverIndex index of the driver as it appeared in input
+     * @param tireIndex index of the tire model as it appeared in input
+     * @param pressure the tire pressure
+     * @return the configuration number
+     */
+    public int getConfiguration(int terrainIndex, int carIndex, int driverIndex, int tireIndex,
+                                TirePressure pressure) {
+        int configuration = terrainIndex;
+        configuration = configuration * cars + carIndex;
+        configuration = configuration * drivers + driverIndex;
+        configuration = configuration * ProblemSpec.NUM_TYRE_MODELS + tireIndex;
+        return configuration * ProblemSpec.TIRE_PRESSURE_LEVELS + pressure.ordinal();
+    }
+
+    /**
+     * Get the configuration number of a car at a cell
+     *
+     * @param pos cell index of the car (1 indexed)
+     * @param car the car type
+     * @param driver the driver
+     * @param tire the tire model
+     * @param pressure the tire pressure
+     * @return the configuration number
+     */
+    public int getConfiguration(int pos, String car, String driver, Tire tire, TirePressure pressure) {
+        return getConfiguration(ps.getCellTerrainIndex(pos), ps.getCarIndex(car),
+                ps.getDriverIndex(driver), ps.getTireIndex(tire), pressure);
+    }
+
+    /**
+     * @param configuration the configuration number
+     * @param index the move index (from 0 to 11)
+     * @return probability of the move
+     */
+    public double getProbability(int configuration, int index) {
+        return probabilities[configuration * ProblemSpec.CAR_MOVE_RANGE + index];
+    }
+
+    /**
+     * Sample a move index with the alias table. The integer part of
+     * p * CAR_MOVE_RANGE picks a column, the fraction decides between the
+     * column and its alias.
+     *
+     * @param configuration the configuration number
+     * @param p uniform sample from [0, 1)
+     * @return the move index (from 0 to 11)
+     */
+    public int sampleIndex(int configuration, double p) {
+        double column = p * ProblemSpec.CAR_MOVE_RANGE;
+        int k = (int) column;
+        int index = configuration * ProblemSpec.CAR_MOVE_RANGE + k;
+        return column - k < aliasProbability[index] ? k : alias[index];
+    }
+
+    /**
+     * Sample a move distance
+     *
+     * @param configuration the configuration number
+     * @param p uniform sample from [0, 1)
+     * @return the move distance in range [-4, 5] or SLIP or BREAKDOWN
+     */
+    public int sampleMove(int configuration, double p) {
+        return ps.convertIndexIntoMove(sampleIndex(configuration, p));
+    }
+}
@@ -28,6 +28,10 @@ public class ProblemSpec {
     public static final int TIRE_PRESSURE_LEVELS = 3;
     /** Max slip probability **/
     public static final double MAX_SLIP_PROBABILITY = 0.9;
+    /** Largest number of cells, cars and drivers a packed state can hold **/
+    public static final int MAX_N = 65535;
+    public static final int MAX_CT = 256;
+    public static final int MAX_DT = 256;
 
     /** The level of the game **/
     private Level level;
@@ -73,6 +77,23 @@ public class ProblemSpec {
     private int[][] fuelUsage;
     /** Slip probability for each terrain for 50% tire pressure **/
     private double[] slipProbability;
+    /** Move distribution of every terrain, car, driver, tire and pressure **/
+    private MoveDistribution moveDistribution;
+    /** Fuel used by a move from every cell with every car and pressure **/
+    private FuelTable fuelTable;
+
+    /* Lookups compiled once the problem is loaded, so the index getters
+     * below do not search the order lists */
+    /** Index of each terrain in terrainOrder **/
+    private EnumMap<Terrain, Integer> terrainIndices;
+    /** Index of each tire model in tireOrder, by ordinal **/
+    private int[] tireIndices;
+    /** Index of each car type in carOrder **/
+    private HashMap<String, Integer> carIds;
+    /** Index of each driver in driverOrder **/
+    private HashMap<String, Integer> driverIds;
+    /** Terrain index of each cell, cell i at i - 1 **/
+    private int[] cellTerrainIndices;
 
     /**
      * Load problem spec from input file
@@ -82,6 +103,36 @@ public class ProblemSpec {
      */
     public ProblemSpec(String fileName) throws IOException {
         loadProblem(fileName);
+        compileIndices();
+        moveDistribution = new MoveDistribution(this);
+        fuelTable = new FuelTable(this);
+    }
+
+    /**
+     * Build the lookups behind the index getters from the loaded problem
+     */
+    private void compileIndices() {
+        terrainIndices = new EnumMap<>(Terrain.class);
+        for (int i = 0; i < terrainOrder.size(); i++) {
+            terrainIndices.put(terrainOrder.get(i), i);
+        }
+        tireIndices = new int[Tire.values().length];
+        Arrays.fill(tireIndices, -1);
+        for (int i = 0; i < tireOrder.size(); i++) {
+            tireIndices[tireOrder.get(i).ordinal()] = i;
+        }
+        carIds = new HashMap<>();
+        for (int i = 0; i < carOrder.size(); i++) {
+            carIds.put(carOrder.get(i), i);
+        }
+        driverIds = new HashMap<>();
+        for (int i = 0; i < driverOrder.size(); i++) {
+            driverIds.put(driverOrder.get(i), i);
+        }
+        cellTerrainIndices = new int[N];
+        for (int i = 0; i < N; i++) {
+            cellTerrainIndices[i] = getTerrainIndex(environmentMap[i]);
+        }
     }
 
     /**
@@ -124,6 +175,7 @@ public class ProblemSpec {
             N = s.nextInt();
             maxT = s.nextInt();
             s.close();
+            checkLimit("N", N, MAX_N);
 
             // 4. line 4 to (3+NT)
             NT = level.get_NT();
@@ -151,6 +203,7 @@ public class ProblemSpec {
             s = new Scanner(line);
             CT = s.nextInt();
             s.close();
+            checkLimit("CT", CT, MAX_CT);
 
             // 6. line (3+NT+2) to (3+NT+2+CT)
             String car;
@@ -169,6 +222,7 @@ public class ProblemSpec {
             s = new Scanner(line);
             DT = s.nextInt();
             s.close();
+            checkLimit("DT", DT, MAX_DT);
 
             // 8. Driver move probabilities
             String driver;
@@ -258,6 +312,16 @@ public class ProblemSpec {
         return sb.toString();
     }
 
+    /**
+     * Make sure a count fits into the fields of a packed state, so states
+     * never overflow into each other's fields
+     */
+    private void checkLimit(String name, int value, int max) {
+        if (value > max) {
+            throw new InputMismatchException(name + " is " + value + ", at most " + max + " is supported");
+        }
+    }
+
     /**
      * Parse a line of the below form and add entry to map:
      *
@@ -483,6 +547,14 @@ public class ProblemSpec {
         return slipProbability;
     }
 
+    public MoveDistribution getMoveDistribution() {
+        return moveDistribution;
+    }
+
+    public FuelTable getFuelTable() {
+        return fuelTable;
+    }
+
     /**
      * Get the first car type in input file
      *
@@ -519,8 +591,8 @@ public class ProblemSpec {
      * @return index of car type as it appeared in input
      */
     public int getCarIndex(String car) {
-        int index = carOrder.indexOf(car);
-        if (index == -1) {
+        Integer index = carIds.get(car);
+        if (index == null) {
             throw new IllegalArgumentException("Invalid car type: " + car);
         }
         return index;
@@ -534,8 +606,8 @@ public class ProblemSpec {
      * @return index of driver type as it appeared in input
      */
     public int getDriverIndex(String driver) {
-        int index = driverOrder.indexOf(driver);
-        if (index == -1) {
+        Integer index = driverIds.get(driver);
+        if (index == null) {
             throw new IllegalArgumentException("Invalid driver type: " + driver);
         }
         return index;
@@ -549,13 +621,24 @@ public class ProblemSpec {
      * @return index of terrain as it appeared in input
      */
     public int getTerrainIndex(Terrain terrain) {
-        int index = terrainOrder.indexOf(terrain);
-        if (index == -1) {
+        Integer index = terrain == null ? null : terrainIndices.get(terrain);
+        if (index == null) {
             throw new IllegalArgumentException("Invalid terrain: " + terrain);
         }
         return index;
     }
 
+    /**
+     * Return the index of the terrain of a cell in terms of order in which
+     * it appeared in input file.
+     *
+     * @param pos the cell (1 indexed)
+     * @return index of the terrain of the cell
+     */
+    public int getCellTerrainIndex(int pos) {
+        return cellTerrainIndices[pos - 1];
+    }
+
     /**
      * Return the index of tire Model in terms of order in which is appeared in
      * input file.
@@ -564,7 +647,7 @@ public class ProblemSpec {
      * @return index of tire model as it appeared in input
      */
     public int getTireIndex(Tire tire) {
-        int index = tireOrder.indexOf(tire);
+        int index = tire == null ? -1 : tireIndices[tire.ordinal()];
         if (index == -1) {
             throw new IllegalArgumentException("Invalid tire model: " + tire);
         }
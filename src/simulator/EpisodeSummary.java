@@ -0,0 +1,66 @@
+package simulator;
+
+/**
+ * An immutable summary of an episode run by the Simulator, the only output
+ * of a headless simulator. Keeps track of:
+ *  1. steps used
+ *  2. whether the goal was reached
+ *  3. whether the episode ran out of steps
+ *  4. number of actions performed, slips and breakdowns
+ */
+public class EpisodeSummary {
+
+    /** Number of time steps used **/
+    private final int steps;
+    /** Whether the car reached the goal **/
+    private final boolean goalReached;
+    /** Whether the episode ended because max time steps was exceeded **/
+    private final boolean maxStepsExceeded;
+    /** Number of actions performed **/
+    private final int actions;
+    /** Number of moves that slipped **/
+    private final int slips;
+    /** Number of moves that broke down **/
+    private final int breakdowns;
+
+    public EpisodeSummary(int steps, boolean goalReached, boolean maxStepsExceeded,
+                          int actions, int slips, int breakdowns) {
+        this.steps = steps;
+        this.goalReached = goalReached;
+        this.maxStepsExceeded = maxStepsExceeded;
+        this.actions = actions;
+        this.slips = slips;
+        this.breakdowns = breakdowns;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public boolean isGoalReached() {
+        return goalReached;
+    }
+
+    public boolean isMaxStepsExceeded() {
+        return maxStepsExceeded;
+    }
+
+    public int getActions() {
+        return actions;
+    }
+
+    public int getSlips() {
+        return slips;
+    }
+
+    public int getBreakdowns() {
+        return breakdowns;
+    }
+
+    @Override
+    public String toString() {
+        return "Episode: [ Steps=" + steps + " | Goal=" + goalReached
+                + " | MaxStepsExceeded=" + maxStepsExceeded + " | Actions=" + actions
+                + " | Slips=" + slips + " | Breakdowns=" + breakdowns + " ]";
+    }
+}
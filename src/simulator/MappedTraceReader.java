@@ -0,0 +1,145 @@
+package simulator;
+
+import problem.Action;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a binary trace written by TraceWriter by memory mapping it, see
+ * TraceFormat. Records are read by their number straight from the mapped
+ * file, so traces larger than the heap can be scanned and different ranges
+ * of records can be scanned by different threads.
+ *
+ * A mapping can only address 2GB, so the records are mapped in chunks of
+ * whole records.
+ */
+public class MappedTraceReader implements Closeable {
+
+    private static final int RECORDS_PER_CHUNK = Integer.MAX_VALUE / TraceFormat.RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final TraceHeader header;
+    private final MappedByteBuffer[] chunks;
+    /** Number of records in the trace **/
+    private final long records;
+
+    /**
+     * Map a trace and read its header
+     *
+     * @param traceFile path of the trace file
+     * @throws IOException if the file can't be read or is not a trace
+     */
+    public MappedTraceReader(String traceFile) throws IOException {
+        channel = FileChannel.open(Paths.get(traceFile), StandardOpenOption.READ);
+        long size = channel.size();
+        MappedByteBuffer start = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                Math.min(size, Integer.MAX_VALUE));
+        try {
+            header = TraceHeader.read(start);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            channel.close();
+            throw new IOException("Can't read trace " + traceFile + ": "
+                    + (e.getMessage() != null ? e.getMessage() : "truncated header"));
+        }
+        long first = start.position();
+        // a record cut short by an interrupted writer is left out
+        records = (size - first) / TraceFormat.RECORD_SIZE;
+        chunks = new MappedByteBuffer[(int) ((records + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK)];
+        for (int i = 0; i < chunks.length; i++) {
+            long chunkStart = (long) i * RECORDS_PER_CHUNK;
+            long chunkRecords = Math.min(RECORDS_PER_CHUNK, records - chunkStart);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    first + chunkStart * TraceFormat.RECORD_SIZE, chunkRecords * TraceFormat.RECORD_SIZE);
+        }
+    }
+
+    /**
+     * @return the number of records in the trace
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @param record the record number
+     * @return the step number of the record, -1 on a start record and the
+     *          steps used on an end record
+     */
+    public int getStep(long record) {
+        return chunk(record).getInt(offset(record));
+    }
+
+    /**
+     * @param record the record number
+     * @return the packed state of the record, see PackedState
+     */
+    public long getState(long record) {
+        return chunk(record).getLong(offset(record) + 4);
+    }
+
+    public boolean isStart(long record) {
+        return getActionNo(record) == TraceFormat.START;
+    }
+
+    public boolean isEnd(long record) {
+        return getActionNo(record) == TraceFormat.END;
+    }
+
+    /**
+     * @param record the record number of an end record
+     * @return whether the episode reached the goal
+     */
+    public boolean isGoalReached(long record) {
+        return TraceFormat.isGoalReached(getCode(record));
+    }
+
+    /**
+     * @param record the record number
+     * @return number of the action of a step record (1 to 8)
+     */
+    public int getActionNo(long record) {
+        return TraceFormat.actionNo(getCode(record));
+    }
+
+    /**
+     * @param record the record number
+     * @return the action of a step record, null on start and end records
+     */
+    public Action getAction(long record) {
+        if (isStart(record) || isEnd(record)) {
+            return null;
+        }
+        return TraceFormat.decode(getCode(record), header.getCarOrder(), header.getDriverOrder());
+    }
+
+    public TraceHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Close the file. The mapping itself is released once it is garbage
+     * collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int getCode(long record) {
+        return chunk(record).getInt(offset(record) + 12);
+    }
+
+    private MappedByteBuffer chunk(long record) {
+        return chunks[(int) (record / RECORDS_PER_CHUNK)];
+    }
+
+    private static int offset(long record) {
+        return (int) (record % RECORDS_PER_CHUNK) * TraceFormat.RECORD_SIZE;
+    }
+}
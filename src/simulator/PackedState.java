@@ -0,0 +1,184 @@
+package simulator;
+
+import problem.ProblemSpec;
+import problem.Tire;
+import problem.TirePressure;
+
+/**
+ * A state packed into a single long, so states can be hashed, stored in
+ * primitive arrays and changed without allocating.
+ *
+ *      | breakdown | slip | pressure | tire | driver | car | fuel | pos |
+ *      |     1     |  1   |    2     |  2   |   8    |  8  |  7   | 16  |
+ *
+ * Cars and drivers are stored by their id, their index in the problem spec,
+ * tires and pressures by their ordinal. The change methods follow the change
+ * methods of State. ProblemSpec rejects problems whose positions, cars or
+ * drivers do not fit into their fields.
+ */
+public final class PackedState {
+
+    private static final int POS_BITS = 16;
+    private static final int FUEL_BITS = 7;
+    private static final int ID_BITS = 8;
+    private static final int ENUM_BITS = 2;
+
+    private static final int FUEL_SHIFT = POS_BITS;
+    private static final int CAR_SHIFT = FUEL_SHIFT + FUEL_BITS;
+    private static final int DRIVER_SHIFT = CAR_SHIFT + ID_BITS;
+    private static final int TIRE_SHIFT = DRIVER_SHIFT + ID_BITS;
+    private static final int PRESSURE_SHIFT = TIRE_SHIFT + ENUM_BITS;
+    private static final int SLIP_SHIFT = PRESSURE_SHIFT + ENUM_BITS;
+    private static final int BREAKDOWN_SHIFT = SLIP_SHIFT + 1;
+
+    private static final Tire[] TIRES = Tire.values();
+    private static final TirePressure[] PRESSURES = TirePressure.values();
+
+    private PackedState() {
+    }
+
+    /**
+     * Pack the fields of a state
+     */
+    public static long pack(int pos, boolean slip, boolean breakdown, int carId, int fuel,
+                            TirePressure pressure, int driverId, Tire tire) {
+        assert fits(pos, POS_BITS) && fits(fuel, FUEL_BITS) && fits(carId, ID_BITS) && fits(driverId, ID_BITS)
+                : "State out of range: pos " + pos + ", fuel " + fuel + ", car " + carId + ", driver " + driverId;
+        return (long) pos
+                | (long) fuel << FUEL_SHIFT
+                | (long) carId << CAR_SHIFT
+                | (long) driverId << DRIVER_SHIFT
+                | (long) tire.ordinal() << TIRE_SHIFT
+                | (long) pressure.ordinal() << PRESSURE_SHIFT
+                | (slip ? 1L : 0L) << SLIP_SHIFT
+                | (breakdown ? 1L : 0L) << BREAKDOWN_SHIFT;
+    }
+
+    /**
+     * Pack a state
+     *
+     * @param ps the problem the car and driver ids come from
+     * @param s the state
+     * @return the packed state
+     */
+    public static long pack(ProblemSpec ps, State s) {
+        return pack(s.getPos(), s.isInSlipCondition(), s.isInBreakdownCondition(),
+                ps.getCarIndex(s.getCarType()), s.getFuel(), s.getTirePressure(),
+                ps.getDriverIndex(s.getDriver()), s.getTireModel());
+    }
+
+    /**
+     * Unpack a state packed with the same problem
+     *
+     * @param ps the problem the car and driver ids come from
+     * @param key the packed state
+     * @return the state
+     */
+    public static State unpack(ProblemSpec ps, long key) {
+        return new State(pos(key), isInSlipCondition(key), isInBreakdownCondition(key),
+                ps.getCarOrder().get(carId(key)), fuel(key), tirePressure(key),
+                ps.getDriverOrder().get(driverId(key)), tireModel(key));
+    }
+
+    public static int pos(long key) {
+        return field(key, 0, POS_BITS);
+    }
+
+    public static int fuel(long key) {
+        return field(key, FUEL_SHIFT, FUEL_BITS);
+    }
+
+    public static int carId(long key) {
+        return field(key, CAR_SHIFT, ID_BITS);
+    }
+
+    public static int driverId(long key) {
+        return field(key, DRIVER_SHIFT, ID_BITS);
+    }
+
+    public static Tire tireModel(long key) {
+        return TIRES[field(key, TIRE_SHIFT, ENUM_BITS)];
+    }
+
+    public static TirePressure tirePressure(long key) {
+        return PRESSURES[field(key, PRESSURE_SHIFT, ENUM_BITS)];
+    }
+
+    public static boolean isInSlipCondition(long key) {
+        return field(key, SLIP_SHIFT, 1) == 1;
+    }
+
+    public static boolean isInBreakdownCondition(long key) {
+        return field(key, BREAKDOWN_SHIFT, 1) == 1;
+    }
+
+    /**
+     * Move the car, staying within the cells 1 to N
+     */
+    public static long changePosition(long key, int move, int N) {
+        int pos = Math.max(1, Math.min(N, pos(key) + move));
+        return with(key, 0, POS_BITS, pos);
+    }
+
+    public static long changeSlipCondition(long key, boolean newSlip) {
+        return with(key, SLIP_SHIFT, 1, newSlip ? 1 : 0);
+    }
+
+    public static long changeBreakdownCondition(long key, boolean newBreakdown) {
+        return with(key, BREAKDOWN_SHIFT, 1, newBreakdown ? 1 : 0);
+    }
+
+    /**
+     * Change the car, which comes with a full tank and full tire pressure
+     */
+    public static long changeCarType(long key, int newCarId) {
+        key = with(key, CAR_SHIFT, ID_BITS, newCarId);
+        key = with(key, FUEL_SHIFT, FUEL_BITS, ProblemSpec.FUEL_MAX);
+        return changeTirePressure(key, TirePressure.ONE_HUNDRED_PERCENT);
+    }
+
+    public static long changeDriver(long key, int newDriverId) {
+        return with(key, DRIVER_SHIFT, ID_BITS, newDriverId);
+    }
+
+    /**
+     * Change the tire model, new tires come at full pressure
+     */
+    public static long changeTires(long key, Tire newTire) {
+        key = with(key, TIRE_SHIFT, ENUM_BITS, newTire.ordinal());
+        return changeTirePressure(key, TirePressure.ONE_HUNDRED_PERCENT);
+    }
+
+    public static long changeTirePressure(long key, TirePressure newTirePressure) {
+        return with(key, PRESSURE_SHIFT, ENUM_BITS, newTirePressure.ordinal());
+    }
+
+    /**
+     * Add fuel, capped at ProblemSpec.FUEL_MAX
+     */
+    public static long addFuel(long key, int fuelToAdd) {
+        return with(key, FUEL_SHIFT, FUEL_BITS, Math.min(ProblemSpec.FUEL_MAX, fuel(key) + fuelToAdd));
+    }
+
+    public static long consumeFuel(long key, int fuelConsumed) {
+        int fuel = fuel(key) - fuelConsumed;
+        if (fuel < ProblemSpec.FUEL_MIN) {
+            throw new IllegalArgumentException("Too much fuel consumed: " + fuelConsumed);
+        }
+        return with(key, FUEL_SHIFT, FUEL_BITS, fuel);
+    }
+
+    private static int field(long key, int shift, int bits) {
+        return (int) ((key >>> shift) & ((1L << bits) - 1));
+    }
+
+    private static long with(long key, int shift, int bits, int value) {
+        assert fits(value, bits) : value + " does not fit into " + bits + " bits";
+        long mask = ((1L << bits) - 1) << shift;
+        return (key & ~mask) | ((long) value << shift);
+    }
+
+    private static boolean fits(int value, int bits) {
+        return value >>> bits == 0;
+    }
+}
@@ -0,0 +1,52 @@
+package simulator;
+
+/**
+ * Source of random numbers for the simulator and the search. Every thread
+ * gets its own source split off a seeded master, so there is no contention
+ * between threads and a run can be repeated with the same seed.
+ */
+public interface RandomSource {
+
+    /** The generator behind a source **/
+    enum Type {
+        /** java.util.SplittableRandom **/
+        SPLITTABLE,
+        /** xoshiro256** **/
+        XOSHIRO
+    }
+
+    /**
+     * @return uniform double from [0, 1)
+     */
+    double nextDouble();
+
+    /**
+     * @param bound exclusive upper bound, must be positive
+     * @return uniform int from [0, bound)
+     */
+    int nextInt(int bound);
+
+    long nextLong();
+
+    /**
+     * Create a new source for another thread. The new source and this one
+     * produce independent streams.
+     *
+     * @return the new source
+     */
+    RandomSource split();
+
+    /**
+     * @param type the generator to use
+     * @param seed the seed, the same seed gives the same stream
+     * @return a new source
+     */
+    static RandomSource create(Type type, long seed) {
+        switch (type) {
+            case XOSHIRO:
+                return new XoshiroRandomSource(seed);
+            default:
+                return new SplittableRandomSource(seed);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package simulator;
+
+import problem.ProblemSpec;
+import problem.Tire;
+import problem.TirePressure;
+
+/**
+ * Mutable counterpart of State that the TransitionKernel changes in place,
+ * so stepping through an episode does not allocate a State per step. Cars
+ * and drivers are held by their index in the problem spec.
+ */
+public class ScratchState {
+
+    /** The position of the car in terms of grid cell in environment **/
+    public int pos;
+    /** Whether the car is in a slip condition **/
+    public boolean slip;
+    /** Whether the car is broken down **/
+    public boolean breakdown;
+    /** Index of the car type **/
+    public int car;
+    /** Fuel remaining **/
+    public int fuel;
+    /** Tire pressure **/
+    public TirePressure pressure;
+    /** Index of the driver **/
+    public int driver;
+    /** The tire model **/
+    public Tire tire;
+
+    /**
+     * Overwrite this scratch state with a state
+     *
+     * @param ps the problem the car and driver indices come from
+     * @param s the state to copy
+     */
+    public void load(ProblemSpec ps, State s) {
+        pos = s.getPos();
+        slip = s.isInSlipCondition();
+        breakdown = s.isInBreakdownCondition();
+        car = ps.getCarIndex(s.getCarType());
+        fuel = s.getFuel();
+        pressure = s.getTirePressure();
+        driver = ps.getDriverIndex(s.getDriver());
+        tire = s.getTireModel();
+    }
+
+    /**
+     * Overwrite this scratch state with a packed state
+     *
+     * @param key the packed state
+     */
+    public void load(long key) {
+        pos = PackedState.pos(key);
+        slip = PackedState.isInSlipCondition(key);
+        breakdown = PackedState.isInBreakdownCondition(key);
+        car = PackedState.carId(key);
+        fuel = PackedState.fuel(key);
+        pressure = PackedState.tirePressure(key);
+        driver = PackedState.driverId(key);
+        tire = PackedState.tireModel(key);
+    }
+
+    /**
+     * @return this scratch state packed, see PackedState
+     */
+    public long pack() {
+        return PackedState.pack(pos, slip, breakdown, car, fuel, pressure, driver, tire);
+    }
+
+    /**
+     * @param ps the problem the car and driver indices come from
+     * @return an immutable copy of this scratch state
+     */
+    public State toState(ProblemSpec ps) {
+        return new State(pos, slip, breakdown, ps.getCarOrder().get(car), fuel, pressure,
+                ps.getDriverOrder().get(driver), tire);
+    }
+
+    /**
+     * Move the car, staying within the cells 1 to N
+     */
+    public void changePosition(int move, int N) {
+        pos = Math.max(1, Math.min(N, pos + move));
+    }
+
+    /**
+     * Change the car, which comes with a full tank and full tire pressure
+     */
+    public void changeCarType(int newCar) {
+        car = newCar;
+        fuel = ProblemSpec.FUEL_MAX;
+        pressure = TirePressure.ONE_HUNDRED_PERCENT;
+    }
+
+    public void changeDriver(int newDriver) {
+        driver = newDriver;
+    }
+
+    /**
+     * Change the tire model, new tires come at full pressure
+     */
+    public void changeTires(Tire newTire) {
+        tire = newTire;
+        pressure = TirePressure.ONE_HUNDRED_PERCENT;
+    }
+
+    public void changeTirePressure(TirePressure newPressure) {
+        pressure = newPressure;
+    }
+
+    /**
+     * Add fuel, capped at ProblemSpec.FUEL_MAX
+     */
+    public void addFuel(int fuelToAdd) {
+        if (fuelToAdd < 0) {
+            throw new IllegalArgumentException("Fuel to add must be positive");
+        }
+        fuel = Math.min(ProblemSpec.FUEL_MAX, fuel + fuelToAdd);
+    }
+
+    public void consumeFuel(int fuelConsumed) {
+        if (fuelConsumed < 0 || fuelConsumed > fuel) {
+            throw new IllegalArgumentException("Invalid fuel consumption: " + fuelConsumed);
+        }
+        fuel -= fuelConsumed;
+    }
+
+    /**
+     * Recover from a slip or breakdown
+     */
+    public void clearConditions() {
+        slip = false;
+        breakdown = false;
+    }
+}
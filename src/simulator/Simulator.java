@@ -3,28 +3,54 @@ package simulator;
 import problem.*;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * This class is the simulator for the problem.
  * The simulator takes in an action and returns the next state.
+ *
+ * Steps are streamed to the output file as they are performed, and to a
+ * binary trace if one is given. A headless simulator, created without an
+ * output file, prints nothing and writes no text output; only its episode
+ * summary and trace are available. Use advance instead of step to also skip
+ * creating the states.
  */
 public class Simulator {
 
     /** Problem spec for the current problem **/
     private ProblemSpec ps;
-    /** The current state of the environment **/
-    private State currentState;
     /** The number of steps taken **/
     private int steps;
+    /** Number of actions performed, slips and breakdowns in this episode **/
+    private int actions;
+    private int slips;
+    private int breakdowns;
+    /** Whether the goal was reached or max time steps exceeded **/
+    private boolean goalReached;
+    private boolean maxStepsExceeded;
+    /** Whether steps are neither recorded, printed nor written **/
+    private boolean headless;
     /** Whether to print progress messages or not
      * Feel free to change this if you don't want messages printed **/
     private boolean verbose = false;
-    /** A container to store steps for output **/
-    private List<Step> stepRecord;
+    /** Streams the steps of the episode to the output file **/
+    private StepWriter writer;
+    /** Steps of the episode written so far, packed, so they can be written
+     * again to stdout if the output file fails part way **/
+    private int[] writtenSteps = new int[64];
+    private long[] writtenStates = new long[64];
+    private Action[] writtenActions = new Action[64];
+    private int written;
+    /** Binary trace the episodes are appended to, null for no trace **/
+    private TraceWriter trace;
     /** path and name for output file **/
     private String outputFile;
+    /** Source of the sampled move distances **/
+    private RandomSource random;
+    /** Performs the actions **/
+    private TransitionKernel kernel;
+    /** The current state, changed in place by the kernel **/
+    private ScratchState scratch = new ScratchState();
 
     /**
      * Construct a new simulator instance from the given problem spec
@@ -33,11 +59,53 @@ public class Simulator {
      * @param outputFile the path for output file
      */
     public Simulator(ProblemSpec ps, String outputFile) {
+        this(ps, outputFile, new SplittableRandomSource());
+    }
+
+    /**
+     * Construct a new simulator instance from the given problem spec that
+     * samples moves from the given random source, so episodes can be
+     * repeated with the same seed
+     *
+     * @param ps the ProblemSpec
+     * @param outputFile the path for output file
+     * @param random source of the sampled move distances
+     */
+    public Simulator(ProblemSpec ps, String outputFile, RandomSource random) {
+        this(ps, outputFile, null, random);
+    }
+
+    /**
+     * Construct a new simulator instance from the given problem spec that
+     * also appends its episodes to a binary trace. The trace is not closed
+     * by the simulator, so it can be shared by the simulators of a batch run.
+     *
+     * @param ps the ProblemSpec
+     * @param outputFile the path for output file, null for a headless simulator
+     * @param trace the trace to write the episodes to, null for no trace
+     * @param random source of the sampled move distances
+     */
+    public Simulator(ProblemSpec ps, String outputFile, TraceWriter trace, RandomSource random) {
         this.ps = ps;
         this.outputFile = outputFile;
+        this.trace = trace;
+        this.random = random;
+        this.kernel = new TransitionKernel(ps);
+        this.headless = outputFile == null;
         reset();
     }
 
+    /**
+     * Construct a new headless simulator instance from the given problem
+     * spec, for running many episodes when only their summaries matter
+     *
+     * @param ps the ProblemSpec
+     * @param random source of the sampled move distances
+     */
+    public Simulator(ProblemSpec ps, RandomSource random) {
+        this(ps, null, random);
+    }
+
     /**
      * Construct a new simulator instance from the given input file
      *
@@ -56,15 +124,31 @@ public class Simulator {
      */
     public State reset() {
         steps = 0;
-        currentState = State.getStartState(ps.getFirstCarType(),
+        actions = 0;
+        slips = 0;
+        breakdowns = 0;
+        goalReached = false;
+        maxStepsExceeded = false;
+        State startState = State.getStartState(ps.getFirstCarType(),
                 ps.getFirstDriver(), ps.getFirstTireModel());
-        stepRecord = new ArrayList<>();
-        stepRecord.add(new Step(-1, currentState.copyState(), null));
+        scratch.load(ps, startState);
+        if (!headless) {
+            written = 0;
+            openWriter();
+            writeStep(-1, null);
+        }
+        if (trace != null) {
+            try {
+                trace.startEpisode(scratch);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         if (verbose) {
             System.out.println("Resetting simulator");
-            System.out.println("Start " + currentState.toString());
+            System.out.println("Start " + startState.toString());
         }
-        return currentState.copyState();
+        return startState;
     }
 
     /**
@@ -72,10 +156,24 @@ public class Simulator {
      *
      * @param a the action to perform
      * @return the next state or null if max time steps exceeded for problem
+     *         or the episode has already ended
      */
     public State step(Action a) throws IllegalArgumentException {
-        State nextState;
+        if (!advance(a)) {
+            return null;
+        }
+        return scratch.toState(ps);
+    }
 
+    /**
+     * Perform an action against environment without creating the next
+     * state, see step
+     *
+     * @param a the action to perform
+     * @return false if max time steps exceeded for problem or the episode
+     *         has already ended, true otherwise
+     */
+    public boolean advance(Action a) throws IllegalArgumentException {
         if (!actionValidForLevel(a)) {
             throw new IllegalArgumentException("ActionType A"
                     + a.getActionType().getActionNo()
@@ -83,13 +181,22 @@ public class Simulator {
                     + ps.getLevel());
         }
 
+        // the episode is over, its output and trace have been finished
+        if (goalReached || maxStepsExceeded) {
+            return false;
+        }
+
         if (steps > ps.getMaxT()) {
             if (verbose) {
                 System.out.println("Max time steps exceeded: " + steps + " > "
                         + ps.getMaxT());
             }
-            outputSteps(false);
-            return null;
+            maxStepsExceeded = true;
+            if (!headless) {
+                outputSteps(false);
+            }
+            endTrace();
+            return false;
         }
 
         if (verbose) {
@@ -97,62 +204,58 @@ public class Simulator {
                     + a.getActionType().getActionNo());
         }
 
-        switch(a.getActionType().getActionNo()) {
-            case 1:
-                nextState = performA1();
-                break;
-            case 2:
-                nextState = performA2(a);
-                break;
-            case 3:
-                nextState = performA3(a);
-                break;
-            case 4:
-                nextState = performA4(a);
-                break;
-            case 5:
-                nextState = performA5(a);
-                break;
-            case 6:
-                nextState = performA6(a);
-                break;
-            case 7:
-                nextState = performA7(a);
-                break;
-            default:
-                nextState = performA8(a);
-        }
+        int stepsTaken = kernel.apply(scratch, a, random);
+        actions++;
 
-        // add step to record for outputting
-        stepRecord.add(new Step(steps, nextState, a));
+        // write step to output
+        if (!headless) {
+            writeStep(steps, a);
+        }
+        if (trace != null) {
+            try {
+                trace.writeStep(steps, scratch, a);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
 
         // handle slip and breakdown cases, we do this now so we can generate
-        // correct output format
-        if (nextState.isInSlipCondition()) {
-            // remain in same state but certain number of steps pass
-            // -1 since we add 1 later
-            steps += ps.getSlipRecoveryTime() - 1;
-            nextState = nextState.changeSlipCondition(false);
-        } else if (nextState.isInBreakdownCondition()) {
-            steps += ps.getRepairTime() - 1;
-            nextState = nextState.changeBreakdownCondition(false);
+        // correct output format: remain in same state but the recovery or
+        // repair steps pass
+        if (scratch.slip) {
+            slips++;
+        } else if (scratch.breakdown) {
+            breakdowns++;
         }
+        scratch.clearConditions();
 
-        steps += 1;
-        currentState = nextState.copyState();
+        steps += stepsTaken;
 
         if (verbose) {
-            System.out.println("\tNext " + nextState.toString());
+            System.out.println("\tNext " + scratch.toState(ps).toString());
         }
 
-        if (isGoalState(nextState)) {
+        if (scratch.pos >= ps.getN()) {
+            goalReached = true;
             if (verbose) {
                 System.out.println("Goal reached after " + steps + " steps.");
             }
-            outputSteps(true);
+            if (!headless) {
+                outputSteps(true);
+            }
+            endTrace();
         }
 
-        return nextState;
+        return true;
+    }
+
+    /**
+     * Get the summary of the current episode
+     *
+     * @return summary of the episode so far
+     */
+    public EpisodeSummary getSummary() {
+        return new EpisodeSummary(steps, goalReached, maxStepsExceeded, actions, slips, breakdowns);
     }
 
     /**
@@ -166,374 +269,135 @@ public class Simulator {
     }
 
     /**
-     * Perform CONTINUE_MOVING action
+     * Check whether a given state is the goal state or not
      *
-     * @return the next state
+     * @param s the state to check
+     * @return True if s is goal state, False otherwise
      */
-    private State performA1() {
-
-        State nextState;
-
-        // check there is enough fuel to make move in current state
-        int fuelRequired = getFuelConsumption();
-        int currentFuel = currentState.getFuel();
-        if (fuelRequired > currentFuel) {
-            return currentState;
-        }
-
-        // Sample move distance
-        int moveDistance = sampleMoveDistance();
-
-        // handle slip and breakdown cases, addition of steps handled in step method
-        if (moveDistance == ProblemSpec.SLIP) {
-            if (verbose) {
-                System.out.println("\tSampled move distance=SLIP");
-            }
-            nextState = currentState.changeSlipCondition(true);
-        } else if (moveDistance == ProblemSpec.BREAKDOWN) {
-            if (verbose) {
-                System.out.println("\tSampled move distance=BREAKDOWN");
-            }
-            nextState = currentState.changeBreakdownCondition(true);
-        } else {
-            if (verbose) {
-                System.out.println("\tSampled move distance=" + moveDistance);
-            }
-            nextState = currentState.changePosition(moveDistance, ps.getN());
-        }
-
-        // handle fuel usage for level 2 and above
-        if (ps.getLevel().getLevelNumber() > 1) {
-            nextState = nextState.consumeFuel(fuelRequired);
+    public Boolean isGoalState(State s) {
+        if (s == null) {
+            return false;
         }
-
-        return nextState;
+        return s.getPos() >= ps.getN();
     }
 
     /**
-     * Return the move distance by sampling from conditional probability
-     * distribution.
-     *
-     * N.B. this formula is not at all optimized for performance, so be wary if
-     * trying to use it for finding a policy
+     * Get the current number of steps taken in latest simulation
      *
-     * @return the move distance in range [-4, 5] or SLIP or BREAKDOWN
+     * @return steps taken in latest simulation
      */
-    private int sampleMoveDistance() {
-
-        double[] moveProbs = getMoveProbs();
-
-        double p = Math.random();
-        double pSum = 0;
-        int move = 0;
-        for (int k = 0; k < ProblemSpec.CAR_MOVE_RANGE; k++) {
-            pSum += moveProbs[k];
-            if (p <= pSum) {
-                move = ps.convertIndexIntoMove(k);
-                break;
-            }
-        }
-        return move;
+    public int getSteps() {
+        return steps;
     }
 
     /**
-     * Calculate the conditional move probabilities for the current state.
-     *
-     *          P(K | C, D, Ti, Te, Pressure)
+     * Write the step record to the output file
      *
-     * @return list of move probabilities
+     * @param goalReached whether the goal was reached
      */
-    private double[] getMoveProbs() {
-
-        // get parameters of current state
-        Terrain terrain = ps.getEnvironmentMap()[currentState.getPos() - 1];
-        int terrainIndex = ps.getTerrainIndex(terrain);
-        String car = currentState.getCarType();
-        String driver = currentState.getDriver();
-        Tire tire = currentState.getTireModel();
-
-        // calculate priors
-        double priorK = 1.0 / ProblemSpec.CAR_MOVE_RANGE;
-        double priorCar = 1.0 / ps.getCT();
-        double priorDriver = 1.0 / ps.getDT();
-        double priorTire = 1.0 / ProblemSpec.NUM_TYRE_MODELS;
-        double priorTerrain = 1.0 / ps.getNT();
-        double priorPressure = 1.0 / ProblemSpec.TIRE_PRESSURE_LEVELS;
-
-        // get probabilities of k given parameter
-        double[] pKGivenCar = ps.getCarMoveProbability().get(car);
-        double[] pKGivenDriver = ps.getDriverMoveProbability().get(driver);
-        double[] pKGivenTire = ps.getTireModelMoveProbability().get(tire);
-        double pSlipGivenTerrain = ps.getSlipProbability()[terrainIndex];
-        double[] pKGivenPressureTerrain = convertSlipProbs(pSlipGivenTerrain);
-
-        // use bayes rule to get probability of parameter given k
-        double[] pCarGivenK = bayesRule(pKGivenCar, priorCar, priorK);
-        double[] pDriverGivenK = bayesRule(pKGivenDriver, priorDriver, priorK);
-        double[] pTireGivenK = bayesRule(pKGivenTire, priorTire, priorK);
-        double[] pPressureTerrainGivenK = bayesRule(pKGivenPressureTerrain,
-                (priorTerrain * priorPressure), priorK);
-
-        // use conditional probability formula on assignment sheet to get what
-        // we want (but what is it that we want....)
-        double[] kProbs = new double[ProblemSpec.CAR_MOVE_RANGE];
-        double kProbsSum = 0;
-        double kProb;
-        for (int k = 0; k < ProblemSpec.CAR_MOVE_RANGE; k++) {
-            kProb = magicFormula(pCarGivenK[k], pDriverGivenK[k],
-                    pTireGivenK[k], pPressureTerrainGivenK[k], priorK);
-            kProbsSum += kProb;
-            kProbs[k] = kProb;
-        }
-
-        // Normalize
-        for (int k = 0; k < ProblemSpec.CAR_MOVE_RANGE; k++) {
-            kProbs[k] /= kProbsSum;
-        }
+    private void outputSteps(boolean goalReached) {
 
-        return kProbs;
-    }
+        System.out.println("Writing steps to output file");
 
-    /**
-     * Convert the probability of slipping on a given terrain with 50% tire
-     * pressure into a probability list, of move distance versus current
-     * terrain and tire pressure.
-     *
-     * @param slipProb probability of slipping on current terrain and 50%
-     *                 tire pressure
-     * @return list of move probabilities given current terrain and pressure
-     */
-    private double[] convertSlipProbs(double slipProb) {
-
-        // Adjust slip probability based on tire pressure
-        TirePressure pressure = currentState.getTirePressure();
-        if (pressure == TirePressure.SEVENTY_FIVE_PERCENT) {
-            slipProb *= 2;
-        } else if (pressure == TirePressure.ONE_HUNDRED_PERCENT) {
-            slipProb *= 3;
-        }
-        // Make sure new probability is not above max
-        if (slipProb > ProblemSpec.MAX_SLIP_PROBABILITY) {
-            slipProb = ProblemSpec.MAX_SLIP_PROBABILITY;
+        if (writer == null) {
+            return;
         }
-
-        // for each terrain, all other action probabilities are uniform over
-        // remaining probability
-        double[] kProbs = new double[ProblemSpec.CAR_MOVE_RANGE];
-        double leftOver = 1 - slipProb;
-        double otherProb = leftOver / (ProblemSpec.CAR_MOVE_RANGE - 1);
-        for (int i = 0; i < ProblemSpec.CAR_MOVE_RANGE; i++) {
-            if (i == ps.getIndexOfMove(ProblemSpec.SLIP)) {
-                kProbs[i] = slipProb;
-            } else {
-                kProbs[i] = otherProb;
-            }
+        try {
+            writer.finish(goalReached);
+        } catch (IOException e) {
+            fallBackToStdout(e);
+            outputSteps(goalReached);
+            return;
         }
-
-        return kProbs;
+        closeWriter();
     }
 
     /**
-     * Apply bayes rule to all values in cond probs list.
-     *
-     * @param condProb list of P(B|A)
-     * @param priorA prior probability of parameter A
-     * @param priorB prior probability of parameter B
-     * @return list of P(A|B)
+     * Append the end of the episode to the trace
      */
-    private double[] bayesRule(double[] condProb, double priorA, double priorB) {
-
-        double[] swappedProb = new double[condProb.length];
-
-        for (int i = 0; i < condProb.length; i++) {
-            swappedProb[i] = (condProb[i] * priorA) / priorB;
+    private void endTrace() {
+        if (trace == null) {
+            return;
         }
-        return swappedProb;
-    }
-
-    /**
-     * Conditional probability formula from assignment 2 sheet
-     *
-     * @param pA P(A | E)
-     * @param pB P(B | E)
-     * @param pC P(C | E)
-     * @param pD P(D | E)
-     * @param priorE P(E)
-     * @return numerator of the P(E | A, B, C, D) formula (still need to divide
-     *      by sum over E)
-     */
-    private double magicFormula(double pA, double pB, double pC, double pD,
-                               double priorE) {
-        return pA * pB * pC * pD * priorE;
-    }
-
-    /**
-     * Get the fuel consumption of moving given the current state
-     *
-     * @return move fuel consumption for current state
-     */
-    private int getFuelConsumption() {
-
-        // get parameters of current state
-        Terrain terrain = ps.getEnvironmentMap()[currentState.getPos() - 1];
-        String car = currentState.getCarType();
-        TirePressure pressure = currentState.getTirePressure();
-
-        // get fuel consumption
-        int terrainIndex = ps.getTerrainIndex(terrain);
-        int carIndex = ps.getCarIndex(car);
-        int fuelConsumption = ps.getFuelUsage()[terrainIndex][carIndex];
-
-        if (pressure == TirePressure.FIFTY_PERCENT) {
-            fuelConsumption *= 3;
-        } else if (pressure == TirePressure.SEVENTY_FIVE_PERCENT) {
-            fuelConsumption *= 2;
+        try {
+            trace.endEpisode(steps, scratch, goalReached);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return fuelConsumption;
     }
 
     /**
-     * Perform CHANGE_CAR action
-     *
-     * @param a a CHANGE_CAR action object
-     * @return the next state
+     * Open the output file, closing the writer of a previous episode
      */
-    private State performA2(Action a) {
-
-        if (currentState.getCarType().equals(a.getCarType())) {
-            // changing to same car type does not change state but still costs a step
-            // no cheap refill here, muhahaha
-            return currentState;
+    private void openWriter() {
+        closeWriter();
+        try {
+            writer = StepWriter.toFile(ps, outputFile);
+        } catch (IOException e) {
+            fallBackToStdout(e);
         }
-
-        return currentState.changeCarType(a.getCarType());
     }
 
-    /**
-     * Perform CHANGE_DRIVER action
-     *
-     * @param a a CHANGE_DRIVER action object
-     * @return the next state
-     */
-    private State performA3(Action a) { return currentState.changeDriver(a.getDriverType()); }
-
-    /**
-     * Perform the CHANGE_TIRES action
-     *
-     * @param a a CHANGE_TIRES action object
-     * @return the next state
-     */
-    private State performA4(Action a) {
-        return currentState.changeTires(a.getTireModel());
-    }
-
-    /**
-     * Perform the ADD_FUEL action
-     *
-     * @param a a ADD_FUEL action object
-     * @return the next state
-     */
-    private State performA5(Action a) {
-        // calculate number of steps used for refueling (minus 1 since we add
-        // 1 in main function
-        int stepsRequired = (int) Math.ceil(a.getFuel() / (float) 10);
-        steps += (stepsRequired - 1);
-        return currentState.addFuel(a.getFuel());
-    }
-
-    /**
-     * Perform the CHANGE_PRESSURE action
-     *
-     * @param a a CHANGE_PRESSURE action object
-     * @return the next state
-     */
-    private State performA6(Action a) {
-        return currentState.changeTirePressure(a.getTirePressure());
-    }
-
-    /**
-     * Perform the CHANGE_CAR_AND_DRIVER action
-     *
-     * @param a a CHANGE_CAR_AND_DRIVER action object
-     * @return the next state
-     */
-    private State performA7(Action a) {
-
-        if (currentState.getCarType().equals(a.getCarType())) {
-            // if car the same, only change driver so no sneaky fuel exploit
-            return currentState.changeDriver(a.getDriverType());
+    private void writeStep(int step, Action a) {
+        if (writer == null) {
+            // the episode was already written out
+            return;
+        }
+        remember(step, a);
+        try {
+            writer.writeStep(step, scratch, a);
+        } catch (IOException e) {
+            // the step was remembered, so it is written again with the rest
+            fallBackToStdout(e);
         }
-        return currentState.changeCarAndDriver(a.getCarType(),
-                a.getDriverType());
     }
 
     /**
-     * Perform the CHANGE_TIRE_FUEL_PRESSURE action
-     *
-     * @param a a CHANGE_TIRE_FUEL_PRESSURE action object
-     * @return the next state
+     * Keep a step of the episode in case it has to be written again
      */
-    private State performA8(Action a) {
-        return currentState.changeTireFuelAndTirePressure(a.getTireModel(),
-                a.getFuel(), a.getTirePressure());
-    }
-
-    /**
-     * Check whether a given state is the goal state or not
-     *
-     * @param s the state to check
-     * @return True if s is goal state, False otherwise
-     */
-    public Boolean isGoalState(State s) {
-        if (s == null) {
-            return false;
+    private void remember(int step, Action a) {
+        if (written == writtenSteps.length) {
+            int capacity = 2 * written;
+            writtenSteps = Arrays.copyOf(writtenSteps, capacity);
+            writtenStates = Arrays.copyOf(writtenStates, capacity);
+            writtenActions = Arrays.copyOf(writtenActions, capacity);
         }
-        return s.getPos() >= ps.getN();
+        writtenSteps[written] = step;
+        writtenStates[written] = scratch.pack();
+        writtenActions[written] = a;
+        written++;
     }
 
-    /**
-     * Get the current number of steps taken in latest simulation
-     *
-     * @return steps taken in latest simulation
-     */
-    public int getSteps() {
-        return steps;
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            // the episode was abandoned, nothing left worth reporting
+        }
+        writer = null;
     }
 
     /**
-     * Write the step record to the output file
-     *
-     * @param goalReached whether the goal was reached
+     * Continue on stdout after the output file failed, starting over with
+     * every step of the episode so far as the file may have lost some
      */
-    private void outputSteps(boolean goalReached) {
-
-        System.out.println("Writing steps to output file");
-
-        try (BufferedWriter output = new BufferedWriter(new FileWriter(outputFile))) {
-
-            for (Step s: stepRecord) {
-                output.write(s.getOutputFormat());
-            }
-
-            if (goalReached) {
-                output.write("Goal reached, you bloody ripper!");
-            } else {
-                output.write("Computer says no. Max steps reached: max steps = " + ps.getMaxT());
-            }
-
-        } catch (IOException e) {
-            System.out.println("Error with output file");
-            System.out.println(e.getMessage());
-            System.out.println("Vomiting output to stdout instead");
-            for (Step s: stepRecord) {
-                System.out.print(s.getOutputFormat());
-            }
-
-            if (goalReached) {
-                System.out.println("Goal reached, you bloody ripper!");
-            } else {
-                System.out.println("Computer says no. Max steps reached: max steps = " + ps.getMaxT());
+    private void fallBackToStdout(IOException e) {
+        System.out.println("Error with output file");
+        System.out.println(e.getMessage());
+        System.out.println("Vomiting output to stdout instead");
+        closeWriter();
+        writer = StepWriter.toStdout(ps);
+        ScratchState replay = new ScratchState();
+        try {
+            for (int i = 0; i < written; i++) {
+                replay.load(writtenStates[i]);
+                writer.writeStep(writtenSteps[i], replay, writtenActions[i]);
             }
+        } catch (IOException stdoutError) {
+            throw new UncheckedIOException(stdoutError);
         }
     }
 }
@@ -0,0 +1,46 @@
+package simulator;
+
+import java.util.SplittableRandom;
+
+/**
+ * RandomSource backed by java.util.SplittableRandom
+ */
+public class SplittableRandomSource implements RandomSource {
+
+    private final SplittableRandom random;
+
+    /**
+     * Create a source with an unpredictable seed
+     */
+    public SplittableRandomSource() {
+        this(new SplittableRandom());
+    }
+
+    public SplittableRandomSource(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private SplittableRandomSource(SplittableRandom random) {
+        this.random = random;
+    }
+
+    @Override
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    @Override
+    public long nextLong() {
+        return random.nextLong();
+    }
+
+    @Override
+    public RandomSource split() {
+        return new SplittableRandomSource(random.split());
+    }
+}
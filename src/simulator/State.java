@@ -249,6 +249,27 @@ public class State {
         return nextState;
     }
 
+    /**
+     * Pack this state into a single long, see PackedState
+     *
+     * @param ps the problem the car and driver ids come from
+     * @return the packed state
+     */
+    public long pack(ProblemSpec ps) {
+        return PackedState.pack(ps, this);
+    }
+
+    /**
+     * Unpack a state packed with the same problem
+     *
+     * @param ps the problem the car and driver ids come from
+     * @param key the packed state
+     * @return the state
+     */
+    public static State unpack(ProblemSpec ps, long key) {
+        return PackedState.unpack(ps, key);
+    }
+
     /**
      * Copy this state, returning a deep copy
      *
@@ -259,6 +280,38 @@ public class State {
                 tireModel);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof State)) {
+            return false;
+        }
+        State other = (State) o;
+        return pos == other.pos
+                && slip == other.slip
+                && breakdown == other.breakdown
+                && fuel == other.fuel
+                && tirePressure == other.tirePressure
+                && tireModel == other.tireModel
+                && carType.equals(other.carType)
+                && driver.equals(other.driver);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = pos;
+        result = 31 * result + (slip ? 1 : 0);
+        result = 31 * result + (breakdown ? 1 : 0);
+        result = 31 * result + carType.hashCode();
+        result = 31 * result + fuel;
+        result = 31 * result + tirePressure.hashCode();
+        result = 31 * result + driver.hashCode();
+        result = 31 * result + tireModel.hashCode();
+        return result;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,216 @@
+package simulator;
+
+import problem.Action;
+import problem.ProblemSpec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Streams the steps of an episode to the output file as they happen, in the
+ * same format as Step.getOutputFormat:
+ *
+ *      step;(pos,slip,breakdown,car,driver,tire,fuel,tirePressure,);(actionText)
+ *
+ * Steps are formatted straight from a ScratchState into one reusable byte
+ * buffer, which is written to the channel whenever it fills up and when the
+ * episode is finished.
+ */
+public class StepWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /** Car and driver names by index, as in the problem spec **/
+    private final List<String> cars;
+    private final List<String> drivers;
+    /** Max time steps of the problem, for the closing line **/
+    private final int maxT;
+    private final WritableByteChannel channel;
+    /** Whether closing the writer closes the channel, false for stdout **/
+    private final boolean ownsChannel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    /** Digits of a number, written back to front **/
+    private final byte[] digits = new byte[11];
+
+    private StepWriter(List<String> cars, List<String> drivers, int maxT,
+                       WritableByteChannel channel, boolean ownsChannel) {
+        this.cars = cars;
+        this.drivers = drivers;
+        this.maxT = maxT;
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+    }
+
+    /**
+     * Open the output file, replacing what was in it
+     *
+     * @param ps the problem the car and driver indices come from
+     * @param outputFile path of the output file
+     * @return writer to the file
+     * @throws IOException if the file can't be opened
+     */
+    public static StepWriter toFile(ProblemSpec ps, String outputFile) throws IOException {
+        return toFile(ps.getCarOrder(), ps.getDriverOrder(), ps.getMaxT(), outputFile);
+    }
+
+    /**
+     * Open the output file, replacing what was in it
+     *
+     * @param cars car names by index
+     * @param drivers driver names by index
+     * @param maxT max time steps of the problem
+     * @param outputFile path of the output file
+     * @return writer to the file
+     * @throws IOException if the file can't be opened
+     */
+    public static StepWriter toFile(List<String> cars, List<String> drivers, int maxT,
+                                    String outputFile) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(outputFile), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new StepWriter(cars, drivers, maxT, channel, true);
+    }
+
+    /**
+     * @param ps the problem the car and driver indices come from
+     * @return writer to stdout
+     */
+    public static StepWriter toStdout(ProblemSpec ps) {
+        return new StepWriter(ps.getCarOrder(), ps.getDriverOrder(), ps.getMaxT(),
+                Channels.newChannel(System.out), false);
+    }
+
+    /**
+     * Append a step
+     *
+     * @param step the step number (-1 for initial state)
+     * @param s the state at end of step, car and driver are indices into the
+     *          names
+     * @param action the action taken (null if no action taken)
+     */
+    public void writeStep(int step, ScratchState s, Action action) throws IOException {
+        if (step == -1) {
+            put("start");
+        } else {
+            put(step);
+        }
+        put(";(");
+        put(s.pos);
+        put(',');
+        put(s.slip ? 1 : 0);
+        put(',');
+        put(s.breakdown ? 1 : 0);
+        put(',');
+        put(cars.get(s.car));
+        put(',');
+        put(drivers.get(s.driver));
+        put(',');
+        put(s.tire.asString());
+        put(',');
+        put(s.fuel);
+        put(',');
+        put(s.pressure.asString());
+        put(",);(");
+        put(action == null ? "n.a." : action.getText());
+        put(")\n");
+        if (!ownsChannel) {
+            // whole lines only, as other messages are printed to stdout too
+            flush();
+        }
+    }
+
+    /**
+     * Append the closing line of the episode and write out everything
+     *
+     * @param goalReached whether the episode reached the goal
+     */
+    public void finish(boolean goalReached) throws IOException {
+        if (goalReached) {
+            put("Goal reached, you bloody ripper!");
+        } else {
+            put("Computer says no. Max steps reached: max steps = ");
+            put(maxT);
+        }
+        if (!ownsChannel) {
+            // end the line on stdout so following messages start on their own
+            put('\n');
+        }
+        flush();
+    }
+
+    /**
+     * Start a new line after the closing line of an episode, so the next
+     * episode can follow in the same output
+     */
+    public void separate() throws IOException {
+        put('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void put(char c) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put((byte) c);
+    }
+
+    private void put(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // names from the input file may need the full encoder
+                putEncoded(text.substring(i));
+                return;
+            }
+            put(c);
+        }
+    }
+
+    private void putEncoded(String text) throws IOException {
+        byte[] bytes = text.getBytes(CHARSET);
+        for (byte b : bytes) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put(b);
+        }
+    }
+
+    private void put(int value) throws IOException {
+        if (value < 0) {
+            put('-');
+        }
+        int count = 0;
+        long rest = Math.abs((long) value);
+        do {
+            digits[count++] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest > 0);
+        while (count > 0) {
+            put((char) digits[--count]);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package simulator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Computes aggregates per level over binary traces, see TraceStats. Every
+ * trace is memory mapped and its records are scanned in slices by a pool of
+ * threads, so both many small traces and a few huge ones are spread over
+ * the threads.
+ *
+ *      java simulator.TraceAggregator [threads=N] path...
+ *
+ * where a path is a trace or a directory searched for traces. Files that are
+ * not traces are skipped.
+ */
+public class TraceAggregator {
+
+    /** Records per scanned slice **/
+    private static final long SLICE = 1 << 20;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Locale.setDefault(Locale.US);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> paths = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("threads=")) {
+                threads = Integer.parseInt(arg.substring("threads=".length()));
+            } else {
+                paths.add(Paths.get(arg));
+            }
+        }
+        if (paths.isEmpty()) {
+            System.out.println("Usage: java simulator.TraceAggregator [threads=N] path...");
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        Map<Integer, TraceStats> stats = aggregate(findTraces(paths), threads);
+        for (TraceStats level : stats.values()) {
+            level.print(System.out);
+        }
+        double duration = (double) (System.currentTimeMillis() - startTime) / 1000;
+        System.out.println("Aggregated in " + duration + " seconds");
+    }
+
+    /**
+     * Aggregate traces
+     *
+     * @param traces the trace files
+     * @param threads number of threads scanning the traces
+     * @return the aggregates by level number
+     */
+    public static Map<Integer, TraceStats> aggregate(List<Path> traces, int threads)
+            throws IOException, InterruptedException {
+        List<MappedTraceReader> readers = new ArrayList<>();
+        List<Future<TraceStats>> slices = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            for (Path trace : traces) {
+                MappedTraceReader reader;
+                try {
+                    reader = new MappedTraceReader(trace.toString());
+                } catch (IOException e) {
+                    System.out.println("Skipping " + e.getMessage());
+                    continue;
+                }
+                readers.add(reader);
+                for (long from = 0; from < reader.getRecords(); from += SLICE) {
+                    long start = from;
+                    long end = Math.min(reader.getRecords(), from + SLICE);
+                    slices.add(executor.submit(() -> {
+                        TraceStats slice = new TraceStats(reader.getHeader().getLevel());
+                        slice.scan(reader, start, end);
+                        return slice;
+                    }));
+                }
+            }
+            Map<Integer, TraceStats> stats = new TreeMap<>();
+            for (Future<TraceStats> future : slices) {
+                TraceStats slice = future.get();
+                stats.computeIfAbsent(slice.getLevel(), TraceStats::new).merge(slice);
+            }
+            return stats;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Scanning a trace failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            for (MappedTraceReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * @param paths traces and directories of traces
+     * @return every regular file of the paths
+     */
+    private static List<Path> findTraces(List<Path> paths) throws IOException {
+        List<Path> traces = new ArrayList<>();
+        for (Path path : paths) {
+            try (Stream<Path> files = Files.walk(path)) {
+                traces.addAll(files.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+            }
+        }
+        return traces;
+    }
+}
@@ -0,0 +1,52 @@
+package simulator;
+
+import java.io.IOException;
+
+/**
+ * Converts a binary trace into the text output format of the Simulator.
+ * Episodes follow each other in the text output, each ending with its
+ * closing line.
+ *
+ *      java simulator.TraceConverter trace output
+ */
+public class TraceConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: java simulator.TraceConverter trace output");
+            return;
+        }
+        int episodes = convert(args[0], args[1]);
+        System.out.println("Converted " + episodes + " episodes");
+    }
+
+    /**
+     * Convert a trace into text
+     *
+     * @param traceFile path of the trace
+     * @param outputFile path of the text output
+     * @return the number of episodes converted
+     * @throws IOException if a file can't be read or written
+     */
+    public static int convert(String traceFile, String outputFile) throws IOException {
+        int episodes = 0;
+        ScratchState scratch = new ScratchState();
+        try (TraceReader reader = new TraceReader(traceFile);
+             StepWriter writer = StepWriter.toFile(reader.getHeader().getCarOrder(),
+                     reader.getHeader().getDriverOrder(), reader.getHeader().getMaxT(), outputFile)) {
+            while (reader.next()) {
+                if (reader.isEnd()) {
+                    writer.finish(reader.isGoalReached());
+                    episodes++;
+                    continue;
+                }
+                if (reader.isStart() && episodes > 0) {
+                    writer.separate();
+                }
+                scratch.load(reader.getState());
+                writer.writeStep(reader.getStep(), scratch, reader.getAction());
+            }
+        }
+        return episodes;
+    }
+}
@@ -0,0 +1,153 @@
+package simulator;
+
+import problem.Action;
+import problem.ActionType;
+import problem.ProblemSpec;
+import problem.Tire;
+import problem.TirePressure;
+
+import java.util.List;
+
+/**
+ * The binary episode trace format shared by TraceWriter and TraceReader.
+ *
+ * A trace starts with a header, see TraceHeader
+ *
+ *      | magic | version | level | maxT | cars | car names | drivers | driver names | N | terrains |
+ *      |   4   |    4    |   4   |  4   |  4   |           |    4    |              | 4 |    N     |
+ *
+ * where every name is a 2 byte length followed by its UTF-8 bytes and every
+ * cell has the ordinal of its terrain. After the header come the episodes,
+ * each a start record, one record per step and an end record. Every record
+ * is RECORD_SIZE bytes
+ *
+ *      | step | packed state | action code |
+ *      |  4   |      8       |      4      |
+ *
+ * The state is packed with PackedState, so cars and drivers are indices into
+ * the names of the header. The action code holds the action number and its
+ * parameters
+ *
+ *      | pressure | fuel | tire | driver | car | action number |
+ *      |    2     |  7   |  2   |   8    |  8  |       4       |
+ *
+ * with action number START on the start record and END on the end record,
+ * whose car field is 1 if the goal was reached. All numbers are big endian.
+ */
+final class TraceFormat {
+
+    static final int MAGIC = 0x4d435452;
+    static final int VERSION = 2;
+    static final int RECORD_SIZE = 16;
+
+    /** Action numbers of the start and end records **/
+    static final int START = 0;
+    static final int END = 15;
+
+    private static final int NUMBER_BITS = 4;
+    private static final int ID_BITS = 8;
+    private static final int ENUM_BITS = 2;
+    private static final int FUEL_BITS = 7;
+
+    private static final int CAR_SHIFT = NUMBER_BITS;
+    private static final int DRIVER_SHIFT = CAR_SHIFT + ID_BITS;
+    private static final int TIRE_SHIFT = DRIVER_SHIFT + ID_BITS;
+    private static final int FUEL_SHIFT = TIRE_SHIFT + ENUM_BITS;
+    private static final int PRESSURE_SHIFT = FUEL_SHIFT + FUEL_BITS;
+
+    private static final ActionType[] ACTION_TYPES = ActionType.values();
+    private static final Tire[] TIRES = Tire.values();
+    private static final TirePressure[] PRESSURES = TirePressure.values();
+
+    private TraceFormat() {
+    }
+
+    /**
+     * @param goalReached whether the episode reached the goal
+     * @return code of an end record
+     */
+    static int endCode(boolean goalReached) {
+        return END | (goalReached ? 1 : 0) << CAR_SHIFT;
+    }
+
+    /**
+     * @param code the action code of an end record
+     * @return whether the episode reached the goal
+     */
+    static boolean isGoalReached(int code) {
+        return field(code, CAR_SHIFT, ID_BITS) == 1;
+    }
+
+    /**
+     * @param code an action code
+     * @return the action number, START or END
+     */
+    static int actionNo(int code) {
+        return field(code, 0, NUMBER_BITS);
+    }
+
+    /**
+     * Encode an action
+     *
+     * @param ps the problem the car and driver ids come from
+     * @param a the action
+     * @return the action code
+     */
+    static int encode(ProblemSpec ps, Action a) {
+        int car = a.getCarType() == null ? 0 : ps.getCarIndex(a.getCarType());
+        int driver = a.getDriverType() == null ? 0 : ps.getDriverIndex(a.getDriverType());
+        // ProblemSpec rejects problems with more cars or drivers than fit
+        assert car >>> ID_BITS == 0 && driver >>> ID_BITS == 0 && a.getFuel() >>> FUEL_BITS == 0
+                : "Action out of range: " + a.getText();
+        int code = a.getActionType().getActionNo();
+        code |= car << CAR_SHIFT;
+        code |= driver << DRIVER_SHIFT;
+        if (a.getTireModel() != null) {
+            code |= a.getTireModel().ordinal() << TIRE_SHIFT;
+        }
+        code |= a.getFuel() << FUEL_SHIFT;
+        if (a.getTirePressure() != null) {
+            code |= a.getTirePressure().ordinal() << PRESSURE_SHIFT;
+        }
+        return code;
+    }
+
+    /**
+     * Decode a step action
+     *
+     * @param code the action code
+     * @param cars car names of the trace
+     * @param drivers driver names of the trace
+     * @return the action
+     */
+    static Action decode(int code, List<String> cars, List<String> drivers) {
+        ActionType type = ACTION_TYPES[actionNo(code) - 1];
+        String car = cars.get(field(code, CAR_SHIFT, ID_BITS));
+        String driver = drivers.get(field(code, DRIVER_SHIFT, ID_BITS));
+        Tire tire = TIRES[field(code, TIRE_SHIFT, ENUM_BITS)];
+        int fuel = field(code, FUEL_SHIFT, FUEL_BITS);
+        TirePressure pressure = PRESSURES[field(code, PRESSURE_SHIFT, ENUM_BITS)];
+        switch (type) {
+            case MOVE:
+                return new Action(type);
+            case CHANGE_CAR:
+                return new Action(type, car);
+            case CHANGE_DRIVER:
+                return new Action(type, driver);
+            case CHANGE_TIRES:
+                return new Action(type, tire);
+            case ADD_FUEL:
+                return new Action(type, fuel);
+            case CHANGE_PRESSURE:
+                return new Action(type, pressure);
+            case CHANGE_CAR_AND_DRIVER:
+                return new Action(type, car, driver);
+            default:
+                return new Action(type, tire, fuel, pressure);
+        }
+    }
+
+    private static int field(int code, int shift, int bits) {
+        return (code >>> shift) & ((1 << bits) - 1);
+    }
+}
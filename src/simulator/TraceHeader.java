@@ -0,0 +1,160 @@
+package simulator;
+
+import problem.ProblemSpec;
+import problem.Terrain;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The header of a binary trace, the parts of the problem needed to read
+ * its records, see TraceFormat.
+ */
+public class TraceHeader {
+
+    /** Level number of the problem **/
+    private final int level;
+    /** Max time steps of the problem **/
+    private final int maxT;
+    /** Car and driver names by index **/
+    private final List<String> cars;
+    private final List<String> drivers;
+    /** Terrain of every cell, cell 1 at index 0 **/
+    private final Terrain[] cells;
+
+    /**
+     * @param ps the problem the trace is of
+     */
+    TraceHeader(ProblemSpec ps) {
+        this(ps.getLevel().getLevelNumber(), ps.getMaxT(), ps.getCarOrder(), ps.getDriverOrder(),
+                ps.getEnvironmentMap());
+    }
+
+    private TraceHeader(int level, int maxT, List<String> cars, List<String> drivers, Terrain[] cells) {
+        this.level = level;
+        this.maxT = maxT;
+        this.cars = Collections.unmodifiableList(cars);
+        this.drivers = Collections.unmodifiableList(drivers);
+        this.cells = cells;
+    }
+
+    /**
+     * Read a header, leaving the buffer at the first record
+     *
+     * @param buffer buffer at the start of the trace
+     * @return the header
+     * @throws BufferUnderflowException if the buffer ends within the header
+     * @throws IllegalArgumentException if the buffer holds no trace of this version
+     */
+    static TraceHeader read(ByteBuffer buffer) {
+        if (buffer.remaining() < 8 || buffer.getInt() != TraceFormat.MAGIC) {
+            throw new IllegalArgumentException("Not a trace");
+        }
+        int version = buffer.getInt();
+        if (version != TraceFormat.VERSION) {
+            throw new IllegalArgumentException("Unsupported trace version: " + version);
+        }
+        int level = buffer.getInt();
+        int maxT = buffer.getInt();
+        List<String> cars = readNames(buffer);
+        List<String> drivers = readNames(buffer);
+        Terrain[] terrains = Terrain.values();
+        Terrain[] cells = new Terrain[buffer.getInt()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = terrains[buffer.get()];
+        }
+        return new TraceHeader(level, maxT, cars, drivers, cells);
+    }
+
+    /**
+     * @return the header as it starts a trace, ready to be written
+     */
+    ByteBuffer encode() {
+        List<byte[]> carNames = encodeNames(cars);
+        List<byte[]> driverNames = encodeNames(drivers);
+        ByteBuffer buffer = ByteBuffer.allocate(7 * 4 + size(carNames) + size(driverNames)
+                + cells.length);
+        buffer.putInt(TraceFormat.MAGIC);
+        buffer.putInt(TraceFormat.VERSION);
+        buffer.putInt(level);
+        buffer.putInt(maxT);
+        putNames(buffer, carNames);
+        putNames(buffer, driverNames);
+        buffer.putInt(cells.length);
+        for (Terrain terrain : cells) {
+            buffer.put((byte) terrain.ordinal());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static List<byte[]> encodeNames(List<String> names) {
+        List<byte[]> encoded = new ArrayList<>(names.size());
+        for (String name : names) {
+            encoded.add(name.getBytes(StandardCharsets.UTF_8));
+        }
+        return encoded;
+    }
+
+    private static int size(List<byte[]> names) {
+        int size = 0;
+        for (byte[] name : names) {
+            size += 2 + name.length;
+        }
+        return size;
+    }
+
+    private static void putNames(ByteBuffer buffer, List<byte[]> names) {
+        buffer.putInt(names.size());
+        for (byte[] name : names) {
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+    }
+
+    private static List<String> readNames(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[buffer.getShort() & 0xffff];
+            buffer.get(bytes);
+            names.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return names;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getMaxT() {
+        return maxT;
+    }
+
+    public List<String> getCarOrder() {
+        return cars;
+    }
+
+    public List<String> getDriverOrder() {
+        return drivers;
+    }
+
+    /**
+     * @return the number of cells N
+     */
+    public int getN() {
+        return cells.length;
+    }
+
+    /**
+     * @param pos cell index (1 indexed)
+     * @return terrain of the cell
+     */
+    public Terrain getTerrain(int pos) {
+        return cells[pos - 1];
+    }
+}
@@ -0,0 +1,133 @@
+package simulator;
+
+import problem.Action;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the records of a binary trace written by TraceWriter one at a time,
+ * see TraceFormat. To scan large traces, or scan them in parallel, use
+ * MappedTraceReader.
+ */
+public class TraceReader implements Closeable {
+
+    /** Large enough for the header of any problem **/
+    private static final int BUFFER_SIZE = 1 << 18;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final TraceHeader header;
+
+    /** Fields of the current record **/
+    private int step;
+    private long state;
+    private int code;
+
+    /**
+     * Open a trace and read its header
+     *
+     * @param traceFile path of the trace file
+     * @throws IOException if the file can't be read or is not a trace
+     */
+    public TraceReader(String traceFile) throws IOException {
+        channel = FileChannel.open(Paths.get(traceFile), StandardOpenOption.READ);
+        buffer.flip();
+        fill(BUFFER_SIZE);
+        try {
+            header = TraceHeader.read(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            channel.close();
+            throw new IOException("Can't read trace " + traceFile + ": "
+                    + (e.getMessage() != null ? e.getMessage() : "truncated header"));
+        }
+    }
+
+    /**
+     * Move to the next record
+     *
+     * @return false if there are no more records
+     */
+    public boolean next() throws IOException {
+        if (!fill(TraceFormat.RECORD_SIZE)) {
+            return false;
+        }
+        step = buffer.getInt();
+        state = buffer.getLong();
+        code = buffer.getInt();
+        return true;
+    }
+
+    /**
+     * @return the step number of the record, -1 on the start record and the
+     *          steps used on the end record
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * @return the packed state of the record, see PackedState
+     */
+    public long getState() {
+        return state;
+    }
+
+    public boolean isStart() {
+        return TraceFormat.actionNo(code) == TraceFormat.START;
+    }
+
+    public boolean isEnd() {
+        return TraceFormat.actionNo(code) == TraceFormat.END;
+    }
+
+    /**
+     * @return whether the episode reached the goal, on the end record
+     */
+    public boolean isGoalReached() {
+        return TraceFormat.isGoalReached(code);
+    }
+
+    /**
+     * @return the action of a step record, null on start and end records
+     */
+    public Action getAction() {
+        if (isStart() || isEnd()) {
+            return null;
+        }
+        return TraceFormat.decode(code, header.getCarOrder(), header.getDriverOrder());
+    }
+
+    public TraceHeader getHeader() {
+        return header;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Make sure at least the given number of bytes are in the buffer
+     *
+     * @return false if the trace ends first
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+}
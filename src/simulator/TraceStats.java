@@ -0,0 +1,179 @@
+package simulator;
+
+import problem.Terrain;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Aggregates over the episodes of one level:
+ *  1. episodes and how many reached the goal
+ *  2. distribution of the steps used to reach the goal
+ *  3. moves, slips and breakdowns per terrain
+ *  4. frequency of every action
+ * Stats of different parts of the traces are merged into one.
+ */
+public class TraceStats {
+
+    private static final int ACTIONS = 8;
+
+    /** Level number of the episodes **/
+    private final int level;
+    private long episodes;
+    private long goals;
+    /** Number of episodes that reached the goal using the index steps **/
+    private long[] goalSteps = new long[0];
+    /** Moves, slips and breakdowns by terrain ordinal **/
+    private final long[] moves = new long[Terrain.values().length];
+    private final long[] slips = new long[Terrain.values().length];
+    private final long[] breakdowns = new long[Terrain.values().length];
+    /** Number of times each action was performed, A1 at index 0 **/
+    private final long[] actions = new long[ACTIONS];
+
+    public TraceStats(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Add the records from..to (exclusive) of a trace. Moves are put on the
+     * terrain of the cell they start from, the cell of the record before.
+     *
+     * @param trace the trace
+     * @param from first record
+     * @param to record after the last record
+     */
+    public void scan(MappedTraceReader trace, long from, long to) {
+        TraceHeader header = trace.getHeader();
+        for (long record = from; record < to; record++) {
+            int actionNo = trace.getActionNo(record);
+            if (actionNo == TraceFormat.START) {
+                continue;
+            }
+            if (actionNo == TraceFormat.END) {
+                addEpisode(trace.isGoalReached(record), trace.getStep(record));
+                continue;
+            }
+            actions[actionNo - 1]++;
+            if (actionNo == 1 && record > 0) {
+                long state = trace.getState(record);
+                int terrain = header.getTerrain(PackedState.pos(trace.getState(record - 1))).ordinal();
+                moves[terrain]++;
+                if (PackedState.isInSlipCondition(state)) {
+                    slips[terrain]++;
+                } else if (PackedState.isInBreakdownCondition(state)) {
+                    breakdowns[terrain]++;
+                }
+            }
+        }
+    }
+
+    private void addEpisode(boolean goalReached, int steps) {
+        episodes++;
+        if (!goalReached) {
+            return;
+        }
+        goals++;
+        if (steps >= goalSteps.length) {
+            goalSteps = Arrays.copyOf(goalSteps, Math.max(steps + 1, 2 * goalSteps.length));
+        }
+        goalSteps[steps]++;
+    }
+
+    /**
+     * Add the aggregates of another part of the traces of the same level
+     *
+     * @param other stats to add
+     */
+    public void merge(TraceStats other) {
+        episodes += other.episodes;
+        goals += other.goals;
+        if (other.goalSteps.length > goalSteps.length) {
+            goalSteps = Arrays.copyOf(goalSteps, other.goalSteps.length);
+        }
+        for (int i = 0; i < other.goalSteps.length; i++) {
+            goalSteps[i] += other.goalSteps[i];
+        }
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] += other.moves[i];
+            slips[i] += other.slips[i];
+            breakdowns[i] += other.breakdowns[i];
+        }
+        for (int i = 0; i < ACTIONS; i++) {
+            actions[i] += other.actions[i];
+        }
+    }
+
+    /**
+     * Print the aggregates
+     *
+     * @param out stream to print to
+     */
+    public void print(PrintStream out) {
+        out.printf("Level %d: %d episodes, %d reached the goal (%.1f%%)%n",
+                level, episodes, goals, percent(goals, episodes));
+        if (goals > 0) {
+            double mean = 0;
+            int min = -1;
+            int max = 0;
+            for (int steps = 0; steps < goalSteps.length; steps++) {
+                if (goalSteps[steps] > 0) {
+                    mean += (double) steps * goalSteps[steps] / goals;
+                    min = min < 0 ? steps : min;
+                    max = steps;
+                }
+            }
+            out.printf("  Steps to goal: mean %.1f, min %d, median %d, 90th percentile %d, max %d%n",
+                    mean, min, percentile(0.5), percentile(0.9), max);
+        }
+        out.printf("  %-24s %12s %12s %15s%n", "Terrain", "Moves", "Slip rate", "Breakdown rate");
+        for (Terrain terrain : Terrain.values()) {
+            int t = terrain.ordinal();
+            if (moves[t] > 0) {
+                out.printf("  %-24s %12d %11.2f%% %14.2f%%%n", terrain.asString(), moves[t],
+                        percent(slips[t], moves[t]), percent(breakdowns[t], moves[t]));
+            }
+        }
+        long total = 0;
+        for (long count : actions) {
+            total += count;
+        }
+        out.print("  Actions:");
+        for (int i = 0; i < ACTIONS; i++) {
+            if (actions[i] > 0) {
+                out.printf(" A%d %d (%.1f%%)", i + 1, actions[i], percent(actions[i], total));
+            }
+        }
+        out.println();
+    }
+
+    /**
+     * @param fraction fraction of the goal episodes
+     * @return steps within which that fraction of the goal episodes reached the goal
+     */
+    private int percentile(double fraction) {
+        long count = 0;
+        for (int steps = 0; steps < goalSteps.length; steps++) {
+            count += goalSteps[steps];
+            if (count >= fraction * goals) {
+                return steps;
+            }
+        }
+        return goalSteps.length - 1;
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public long getEpisodes() {
+        return episodes;
+    }
+
+    public long getGoals() {
+        return goals;
+    }
+}
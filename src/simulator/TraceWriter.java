@@ -0,0 +1,96 @@
+package simulator;
+
+import problem.Action;
+import problem.ProblemSpec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes episodes to a binary trace, see TraceFormat. Any number of episodes
+ * can go into one trace, records are collected in one reusable byte buffer
+ * that is written to the file channel whenever it fills up.
+ */
+public class TraceWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ProblemSpec ps;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Create the trace file, replacing what was in it, and write its header
+     *
+     * @param ps the problem the episodes are of
+     * @param traceFile path of the trace file
+     * @throws IOException if the file can't be written
+     */
+    public TraceWriter(ProblemSpec ps, String traceFile) throws IOException {
+        this.ps = ps;
+        this.channel = FileChannel.open(Paths.get(traceFile), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        ByteBuffer header = new TraceHeader(ps).encode();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    /**
+     * Start an episode
+     *
+     * @param s the start state
+     */
+    public void startEpisode(ScratchState s) throws IOException {
+        putRecord(-1, s.pack(), TraceFormat.START);
+    }
+
+    /**
+     * Append a step
+     *
+     * @param step the step number
+     * @param s the state at end of step
+     * @param action the action taken
+     */
+    public void writeStep(int step, ScratchState s, Action action) throws IOException {
+        putRecord(step, s.pack(), TraceFormat.encode(ps, action));
+    }
+
+    /**
+     * End an episode
+     *
+     * @param steps the steps used
+     * @param s the final state
+     * @param goalReached whether the episode reached the goal
+     */
+    public void endEpisode(int steps, ScratchState s, boolean goalReached) throws IOException {
+        putRecord(steps, s.pack(), TraceFormat.endCode(goalReached));
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private void putRecord(int step, long key, int code) throws IOException {
+        if (buffer.remaining() < TraceFormat.RECORD_SIZE) {
+            flush();
+        }
+        buffer.putInt(step);
+        buffer.putLong(key);
+        buffer.putInt(code);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,158 @@
+package simulator;
+
+import problem.Action;
+import problem.MoveDistribution;
+import problem.ProblemSpec;
+
+/**
+ * The transition model of the problem: performs any of the eight action
+ * types on a ScratchState in place. The official Simulator records its
+ * episodes with it and the search plays its rollouts with it, so both follow
+ * exactly the same rules.
+ *
+ * A kernel holds no per-episode state and can be shared between threads as
+ * long as every thread uses its own scratch state and random source.
+ */
+public class TransitionKernel {
+
+    /** Result of a move the car does not have enough fuel for **/
+    public static final int NO_FUEL = Integer.MIN_VALUE;
+
+    private final ProblemSpec ps;
+    /** Whether moving uses fuel, from level 2 on **/
+    private final boolean consumesFuel;
+
+    public TransitionKernel(ProblemSpec ps) {
+        this.ps = ps;
+        this.consumesFuel = ps.getLevel().getLevelNumber() > 1;
+    }
+
+    /**
+     * Perform an action. A slip or breakdown is left set on the state so the
+     * caller can record it before calling clearConditions.
+     *
+     * @param s the state to change
+     * @param a the action to perform
+     * @param random source of the sampled move distance
+     * @return number of steps the action takes
+     */
+    public int apply(ScratchState s, Action a, RandomSource random) {
+        switch (a.getActionType()) {
+            case MOVE:
+                int move = move(s, random);
+                if (move == ProblemSpec.SLIP) {
+                    return ps.getSlipRecoveryTime();
+                } else if (move == ProblemSpec.BREAKDOWN) {
+                    return ps.getRepairTime();
+                }
+                return 1;
+            case CHANGE_CAR:
+                changeCarType(s, ps.getCarIndex(a.getCarType()));
+                return 1;
+            case CHANGE_DRIVER:
+                s.changeDriver(ps.getDriverIndex(a.getDriverType()));
+                return 1;
+            case CHANGE_TIRES:
+                s.changeTires(a.getTireModel());
+                return 1;
+            case ADD_FUEL:
+                s.addFuel(a.getFuel());
+                return fuelSteps(a.getFuel());
+            case CHANGE_PRESSURE:
+                s.changeTirePressure(a.getTirePressure());
+                return 1;
+            case CHANGE_CAR_AND_DRIVER:
+                // if car the same, only change driver so no sneaky fuel exploit
+                changeCarType(s, ps.getCarIndex(a.getCarType()));
+                s.changeDriver(ps.getDriverIndex(a.getDriverType()));
+                return 1;
+            case CHANGE_TIRE_FUEL_PRESSURE:
+                s.addFuel(a.getFuel());
+                s.tire = a.getTireModel();
+                s.changeTirePressure(a.getTirePressure());
+                return 1;
+            default:
+                throw new IllegalArgumentException("Unknown action " + a.getText());
+        }
+    }
+
+    /**
+     * Change the car. Changing to the same car type does not change the
+     * state but still costs a step, no cheap refill here.
+     */
+    private void changeCarType(ScratchState s, int car) {
+        if (car != s.car) {
+            s.changeCarType(car);
+        }
+    }
+
+    /**
+     * Perform a move: sample the distance, move or set the slip or breakdown
+     * condition, and use fuel from level 2 on
+     *
+     * @param s the state to change
+     * @param random source of the sampled move distance
+     * @return the move distance in range [-4, 5], SLIP, BREAKDOWN, or NO_FUEL
+     *      if the state was left unchanged for lack of fuel
+     */
+    public int move(ScratchState s, RandomSource random) {
+        int fuelConsumption = getFuelConsumption(s);
+        if (fuelConsumption > s.fuel) {
+            return NO_FUEL;
+        }
+
+        int move = sampleMove(s, random);
+        if (move == ProblemSpec.SLIP) {
+            s.slip = true;
+        } else if (move == ProblemSpec.BREAKDOWN) {
+            s.breakdown = true;
+        } else {
+            s.changePosition(move, ps.getN());
+        }
+
+        if (consumesFuel) {
+            s.consumeFuel(fuelConsumption);
+        }
+        return move;
+    }
+
+    /**
+     * Perform a move on an immutable state
+     *
+     * @param s the state before the move
+     * @param random source of the sampled move distance
+     * @return the state after the move, with its slip or breakdown condition
+     */
+    public State move(State s, RandomSource random) {
+        ScratchState scratch = new ScratchState();
+        scratch.load(ps, s);
+        move(scratch, random);
+        return scratch.toState(ps);
+    }
+
+    /**
+     * Sample a move distance from the compiled move distribution
+     *
+     * @return the move distance in range [-4, 5] or SLIP or BREAKDOWN
+     */
+    public int sampleMove(ScratchState s, RandomSource random) {
+        MoveDistribution moveDistribution = ps.getMoveDistribution();
+        int configuration = moveDistribution.getConfiguration(ps.getCellTerrainIndex(s.pos), s.car,
+                s.driver, ps.getTireIndex(s.tire), s.pressure);
+        return moveDistribution.sampleMove(configuration, random.nextDouble());
+    }
+
+    /**
+     * @return fuel a move from the current cell uses
+     */
+    public int getFuelConsumption(ScratchState s) {
+        return ps.getFuelTable().getConsumption(s.pos, s.car, s.pressure);
+    }
+
+    /**
+     * Number of steps adding fuel takes, one per 10 units started
+     */
+    public static int fuelSteps(int fuelToAdd) {
+        return (int) Math.ceil(fuelToAdd / (float) 10);
+    }
+}
@@ -0,0 +1,67 @@
+package simulator;
+
+/**
+ * RandomSource using the xoshiro256** generator of Blackman and Vigna. The
+ * 256 bits of state are filled from the seed with SplitMix64, as the authors
+ * recommend, and split sources are seeded from the parent's stream the same
+ * way.
+ */
+public class XoshiroRandomSource implements RandomSource {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    public XoshiroRandomSource(long seed) {
+        long x = seed;
+        s0 = mix(x += GOLDEN_GAMMA);
+        s1 = mix(x += GOLDEN_GAMMA);
+        s2 = mix(x += GOLDEN_GAMMA);
+        s3 = mix(x + GOLDEN_GAMMA);
+    }
+
+    /**
+     * SplitMix64 output function
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    @Override
+    public double nextDouble() {
+        // top 53 bits as a fraction
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        // multiply the top 32 bits by the bound and keep the high half
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    @Override
+    public RandomSource split() {
+        return new XoshiroRandomSource(nextLong());
+    }
+}
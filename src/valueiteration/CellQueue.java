@@ -0,0 +1,109 @@
+package valueiteration;
+
+import java.util.Arrays;
+
+/**
+ * Max priority queue of the cells of the track for prioritized sweeping.
+ * Every cell is in the queue at most once, raising the priority of a cell
+ * already in the queue moves it up. An indexed binary heap: heap holds
+ * cells, place the position of every cell in the heap.
+ */
+class CellQueue {
+
+    private final double[] priority;
+    private final int[] heap;
+    private final int[] place;
+    private int size;
+
+    /**
+     * @param cells number of cells, cells are numbered from 0
+     */
+    CellQueue(int cells) {
+        priority = new double[cells];
+        heap = new int[cells];
+        place = new int[cells];
+        Arrays.fill(place, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return highest priority in the queue
+     */
+    double peekPriority() {
+        return priority[heap[0]];
+    }
+
+    /**
+     * Queue a cell with at least the given priority
+     */
+    void raise(int cell, double newPriority) {
+        if (place[cell] < 0) {
+            priority[cell] = newPriority;
+            heap[size] = cell;
+            place[cell] = size;
+            size++;
+        } else if (newPriority > priority[cell]) {
+            priority[cell] = newPriority;
+        } else {
+            return;
+        }
+        up(place[cell]);
+    }
+
+    /**
+     * Remove the cell with the highest priority
+     *
+     * @return the cell
+     */
+    int poll() {
+        int top = heap[0];
+        size--;
+        place[top] = -1;
+        if (size > 0) {
+            heap[0] = heap[size];
+            place[heap[0]] = 0;
+            down(0);
+        }
+        return top;
+    }
+
+    private void up(int i) {
+        int cell = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (priority[heap[parent]] >= priority[cell]) {
+                break;
+            }
+            move(heap[parent], i);
+            i = parent;
+        }
+        move(cell, i);
+    }
+
+    private void down(int i) {
+        int cell = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && priority[heap[child + 1]] > priority[heap[child]]) {
+                child++;
+            }
+            if (priority[heap[child]] <= priority[cell]) {
+                break;
+            }
+            move(heap[child], i);
+            i = child;
+        }
+        move(cell, i);
+    }
+
+    private void move(int cell, int i) {
+        heap[i] = cell;
+        place[cell] = i;
+    }
+}
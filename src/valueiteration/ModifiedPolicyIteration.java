@@ -0,0 +1,71 @@
+package valueiteration;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Modified policy iteration over the states and values of a ValueIteration.
+ * Every round makes the policy greedy with one improvement sweep, which
+ * backs up all actions, and then evaluates it with a number of partial
+ * evaluation sweeps, which only back up the action of the policy. With a
+ * discount close to 1 values travel slowly back from the goal, and the
+ * cheap evaluation sweeps do most of that travelling.
+ *
+ * The values have converged when an improvement sweep changes no value by
+ * more than epsilon, as for value iteration.
+ */
+public class ModifiedPolicyIteration {
+
+    private final ValueIteration vi;
+    /** Number of evaluation sweeps after every improvement sweep **/
+    private final int evaluationSweeps;
+    /** Number of improvement sweeps of the last solve **/
+    private int improvements;
+
+    /**
+     * @param vi the states and values to solve
+     * @param evaluationSweeps number of evaluation sweeps after every
+     *                         improvement sweep, 0 for plain value iteration
+     */
+    public ModifiedPolicyIteration(ValueIteration vi, int evaluationSweeps) {
+        this.vi = vi;
+        this.evaluationSweeps = evaluationSweeps;
+    }
+
+    /**
+     * Improve and evaluate the policy until the values converge
+     *
+     * @param epsilon largest change of a value in an improvement sweep at
+     *                which the values have converged
+     * @param threads number of threads sweeping the states
+     */
+    public void solve(double epsilon, int threads) {
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        improvements = 0;
+        try {
+            while (vi.getSweeps() < ValueIteration.MAX_SWEEPS) {
+                improvements++;
+                if (vi.sweep(pool, true) <= epsilon) {
+                    break;
+                }
+                for (int i = 0; i < evaluationSweeps; i++) {
+                    vi.sweep(pool, false);
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * @return number of improvement sweeps of the last solve
+     */
+    public int getImprovements() {
+        return improvements;
+    }
+
+    public ValueIteration getValueIteration() {
+        return vi;
+    }
+}
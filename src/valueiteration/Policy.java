@@ -1,36 +1,84 @@
 package valueiteration;
 
-import problem.ActionType;
+import problem.Action;
 import problem.ProblemSpec;
+import simulator.RandomSource;
+import simulator.Simulator;
 import simulator.State;
 
-import java.util.HashMap;
-
+/**
+ * Drives the car with the optimal policy found by value iteration or
+ * modified policy iteration, instead of searching online.
+ */
 public class Policy {
     private ValueIteration vi;
     private ProblemSpec ps;
 
-    public Policy(ProblemSpec ps) {
+    /**
+     * Solve the problem
+     *
+     * @param ps the problem
+     * @param epsilon largest change of a value in a sweep at which the
+     *                values have converged
+     * @param threads number of threads solving the problem
+     * @param evaluationSweeps 0 to solve with value iteration, otherwise
+     *                         the evaluation sweeps of every round of
+     *                         modified policy iteration
+     * @param schedule order in which value iteration backs up the states,
+     *                 modified policy iteration always sweeps in order
+     */
+    public Policy(ProblemSpec ps, double epsilon, int threads, int evaluationSweeps,
+                  ValueIteration.Schedule schedule) {
         this.ps = ps;
+        long start = System.currentTimeMillis();
         vi = new ValueIteration(ps);
-        vi.initReward();
-        vi.valueIteration();
+        if (evaluationSweeps > 0) {
+            ModifiedPolicyIteration mpi = new ModifiedPolicyIteration(vi, evaluationSweeps);
+            mpi.solve(epsilon, threads);
+            System.out.println("Modified policy iteration: " + vi.getStates() + " states, "
+                    + mpi.getImprovements() + " improvement sweeps, " + vi.getSweeps() + " sweeps, "
+                    + vi.getBackups() + " backups, " + threads + " threads, "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } else {
+            vi.solve(epsilon, threads, schedule);
+            // only the Jacobi schedule sweeps on more than one thread
+            String threadCount = schedule == ValueIteration.Schedule.JACOBI ? threads + " threads, " : "";
+            System.out.println("Value iteration (" + schedule.name().toLowerCase() + "): " + vi.getStates()
+                    + " states, " + vi.getSweeps() + " sweeps, " + vi.getBackups() + " backups, "
+                    + threadCount + (System.currentTimeMillis() - start) + " ms");
+        }
     }
 
-    public ActionType chooseAction(State state) { //Must return the parameters for the action as well!
-        vi.initReward();
-        vi.valueIteration();
-        HashMap<State, Double> val = vi.valueIteration;
-
-        for(ActionType actionType : ps.getLevel().getAvailableActions()) {
-            if(actionType.getActionNo() == 1) {
+    public Policy(ProblemSpec ps) {
+        this(ps, ValueIteration.DEFAULT_EPSILON, 1, 0, ValueIteration.Schedule.JACOBI);
+    }
 
-            } else if(actionType.getActionNo() == 2) {
+    /**
+     * @param state the current state, after any slip or breakdown
+     * @return the best action in the state
+     */
+    public Action chooseAction(State state) {
+        return vi.getAction(state);
+    }
 
+    /**
+     * Drive to the goal with the policy, starting over if the steps run out
+     *
+     * @param output the path for output file
+     * @param random source of the sampled move distances
+     * @return the number of steps of the episode that reached the goal
+     */
+    public int run(String output, RandomSource random) {
+        Simulator sim = new Simulator(ps, output, random);
+        State s = State.getStartState(ps.getFirstCarType(), ps.getFirstDriver(), ps.getFirstTireModel());
+        while (s.getPos() < ps.getN()) {
+            s = sim.step(chooseAction(s));
+            if (s == null) {
+                System.out.println("Failed attempt. Retrying...");
+                sim = new Simulator(ps, output, random);
+                s = State.getStartState(ps.getFirstCarType(), ps.getFirstDriver(), ps.getFirstTireModel());
             }
         }
-
-        return null;
-
+        return sim.getSummary().getSteps();
     }
-}
\ No newline at end of file
+}
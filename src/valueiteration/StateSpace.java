@@ -0,0 +1,111 @@
+package valueiteration;
+
+import problem.ProblemSpec;
+import problem.Tire;
+import problem.TirePressure;
+import simulator.State;
+
+/**
+ * Numbers every state of a problem, so values and policies can be stored in
+ * flat arrays. A state id is
+ *
+ *      ((((pos - 1) * cars + car) * drivers + driver) * tires + tire) * pressures + pressure) * fuels + fuel
+ *
+ * with cars and drivers by their index in the problem spec and tires by
+ * their ordinal. Slip and breakdown are left out, the car recovers before
+ * its next action.
+ *
+ * On level 1 fuel is never used and the pressure can't be changed, so every
+ * state has a full tank at 100% pressure and those dimensions have a single
+ * value.
+ */
+class StateSpace {
+
+    final int N;
+    final int cars;
+    final int drivers;
+    final int tires = Tire.values().length;
+    /** Number of tire pressures and fuel amounts states can have **/
+    final int pressures;
+    final int fuels;
+    /** Number of states **/
+    final int size;
+    /** Number of states per position **/
+    final int cellSize;
+    /** Difference in id of states one car, driver, tire or pressure apart **/
+    final int carStride;
+    final int driverStride;
+    final int tireStride;
+    final int pressureStride;
+    /** Pressure and fuel index of a new car **/
+    final int fullPressure;
+    final int fullFuel;
+
+    /** Most states the arrays of value iteration can hold, the largest array
+     * size all JVMs allow **/
+    static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final TirePressure[] PRESSURES = TirePressure.values();
+
+    StateSpace(ProblemSpec ps) {
+        boolean levelOne = ps.getLevel().getLevelNumber() == 1;
+        N = ps.getN();
+        cars = ps.getCT();
+        drivers = ps.getDT();
+        pressures = levelOne ? 1 : PRESSURES.length;
+        fuels = levelOne ? 1 : ProblemSpec.FUEL_MAX + 1;
+        pressureStride = fuels;
+        tireStride = pressures * pressureStride;
+        driverStride = tires * tireStride;
+        carStride = drivers * driverStride;
+        cellSize = cars * carStride;
+        long states = (long) N * cellSize;
+        if (states > MAX_SIZE) {
+            throw new IllegalArgumentException("The problem has " + states
+                    + " states, value iteration can't hold more than " + MAX_SIZE);
+        }
+        size = (int) states;
+        fullPressure = pressureIndex(TirePressure.ONE_HUNDRED_PERCENT);
+        fullFuel = fuelIndex(ProblemSpec.FUEL_MAX);
+    }
+
+    /**
+     * @param pos cell index (1 indexed)
+     * @param car index of the car
+     * @param driver index of the driver
+     * @param tire ordinal of the tire model
+     * @param pressure pressure index, see pressureIndex
+     * @param fuel fuel index, see fuelIndex
+     * @return the state id
+     */
+    int id(int pos, int car, int driver, int tire, int pressure, int fuel) {
+        return ((((((pos - 1) * cars + car) * drivers + driver) * tires + tire) * pressures + pressure)
+                * fuels + fuel);
+    }
+
+    /**
+     * @param ps the problem the car and driver indices come from
+     * @param s a state of the problem
+     * @return the state id
+     */
+    int id(ProblemSpec ps, State s) {
+        return id(s.getPos(), ps.getCarIndex(s.getCarType()), ps.getDriverIndex(s.getDriver()),
+                s.getTireModel().ordinal(), pressureIndex(s.getTirePressure()), fuelIndex(s.getFuel()));
+    }
+
+    int pressureIndex(TirePressure pressure) {
+        return pressures == 1 ? 0 : pressure.ordinal();
+    }
+
+    TirePressure pressure(int pressureIndex) {
+        return pressures == 1 ? TirePressure.ONE_HUNDRED_PERCENT : PRESSURES[pressureIndex];
+    }
+
+    int fuelIndex(int fuel) {
+        return fuels == 1 ? 0 : fuel;
+    }
+
+    int fuel(int fuelIndex) {
+        return fuels == 1 ? ProblemSpec.FUEL_MAX : fuelIndex;
+    }
+}
@@ -2,203 +2,581 @@ package valueiteration;
 
 import problem.*;
 import simulator.State;
+import simulator.TransitionKernel;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
-
+/**
+ * Value iteration over every state of a problem, see StateSpace, for all
+ * five levels. Values and the policy are kept in flat arrays indexed by
+ * state id.
+ *
+ * The value of a state is the discounted reward of reaching the goal,
+ *
+ *      V(s) = max_a sum_s' P(s' | s, a) * discount^steps(s, a, s') * V(s')
+ *
+ * with V = 1 at the goal, so actions are discounted by the steps they take:
+ * the recovery or repair time of a slip or breakdown, one step per 10 fuel
+ * added and one step for anything else. Moves use the exact move
+ * distribution and fuel consumption of the problem. The limit on the number
+ * of steps is not part of the state, the fastest way to the goal is also the
+ * most likely to make it in time.
+ *
+ * Only actions that change the state are considered. Fuel is added in
+ * multiples of 10, which get as much fuel for the same steps as any other
+ * amount, and CHANGE_TIRE_FUEL_PRESSURE always fills up as it takes one step
+ * regardless of the fuel.
+ */
 public class ValueIteration {
-    ProblemSpec ps;
-    HashMap<State, Double> valueIteration = new HashMap<>();
-    HashMap<State, Integer> policy = new HashMap<>();
-    HashMap<State, Double> valueIterationTmp = new HashMap<>();
-    HashMap<State, Integer> policyTmp = new HashMap<>();
-    HashMap<State, Double> reward = new HashMap<>();
-    List<String> cars;
-    List<String> drivers;
-    List<Tire> tires;
+
+    /** Order in which the states are backed up **/
+    public enum Schedule {
+        /** every sweep computes the new values from those of the previous
+         * sweep, can be split over threads **/
+        JACOBI,
+        /** sweeps from the goal backwards, updating the values in place so
+         * they flow back from the goal within one sweep **/
+        GAUSS_SEIDEL,
+        /** backs up the cell whose values changed the most first, and queues
+         * the cells that can move into it **/
+        PRIORITIZED
+    }
+
+    /** Largest change of a value in a sweep at which the values have converged **/
+    public static final double DEFAULT_EPSILON = 1e-9;
+    /** Give up converging after this many sweeps **/
+    static final int MAX_SWEEPS = 100000;
+
+    private final ProblemSpec ps;
+    private final StateSpace space;
+    private final MoveDistribution moveDistribution;
+    private final FuelTable fuelTable;
+    /** Whether moving uses fuel, from level 2 on **/
+    private final boolean consumesFuel;
+    /** Tire index in the problem spec by tire ordinal **/
+    private final int[] tireIndices;
+    /** Move distance of each move index **/
+    private final int[] moves = new int[ProblemSpec.CAR_MOVE_RANGE];
+    /** discount^steps by number of steps **/
+    private final double[] discounts;
+
+    /** The actions of the level and their parameters, by action number **/
+    private final Action[] actions;
+    private final ActionType[] actionTypes;
+    private final int[] actionCars;
+    private final int[] actionDrivers;
+    private final int[] actionTires;
+    private final int[] actionFuels;
+    private final int[] actionPressures;
+
+    /** Value of every state **/
+    private double[] values;
+    /** Values of the sweep in progress, swapped with values after it **/
+    private double[] next;
+    /** Number of the best action of every state **/
+    private final int[] policy;
+    /** Number of sweeps run over these values **/
+    private int sweeps;
+    /** Number of state backups run over these values **/
+    private long backups;
+    /** Largest change of a value in the last sweep **/
+    private double residual;
 
     public ValueIteration(ProblemSpec ps) {
         this.ps = ps;
-        cars = ps.getCarOrder();
-        drivers = ps.getDriverOrder();
-        tires = ps.getTireOrder();
-    }
-
-    public void valueIteration() {
-        State state;
-        State newState;
-        //Go through each state
-        for(int pos=0; pos<ps.getN(); pos++) {
-            for(int car=0; car<ps.getCT(); car++) {
-                for(int driver=0; driver<ps.getDT(); driver++) {
-                    for(int tire=0; tire<ps.NUM_TYRE_MODELS; tire++) {
-                        if(ps.getLevel().getLevelNumber() == 1) {
-                            state = new State(pos, false, false, cars.get(car),
-                                    ps.FUEL_MAX, TirePressure.ONE_HUNDRED_PERCENT, drivers.get(driver), tires.get(tire));
-                            double bestValue = 0.0;
-                            int bestAction = 1;
-                            for(ActionType a : ps.getLevel().getAvailableActions()) {
-                                if(a.getActionNo() == 1) { //Move
-                                    System.out.println(valueIteration.get(state));
-                                    System.out.println(sumTransitionFunc(state));
-                                    double newValue = reward.get(state) + sumTransitionFunc(state) * ps.getDiscountFactor();
-                                    if (bestValue < newValue) {
-                                        bestValue = newValue;
-                                        bestAction = a.getActionNo();
-                                    }
-                                } else if(a.getActionNo() == 2) { //Change car
-                                    newState = new State(pos, false, false, cars.get(car + 1 % 2),
-                                            50, TirePressure.ONE_HUNDRED_PERCENT, drivers.get(driver), tires.get(tire));
-                                    double newValue = reward.get(state) + valueIteration.get(newState) * ps.getDiscountFactor();
-                                    if (bestValue < newValue) {
-                                        bestValue = newValue;
-                                        bestAction = a.getActionNo();
-                                    }
-                                } else if(a.getActionNo() == 3) { //Change driver
-                                    newState = new State(pos, false, false, cars.get(car),
-                                            50, TirePressure.ONE_HUNDRED_PERCENT, drivers.get(driver + 1 % 2), tires.get(tire));
-                                    double newValue = reward.get(state) + valueIteration.get(newState) * ps.getDiscountFactor();
-                                    if (bestValue < newValue) {
-                                        bestValue = newValue;
-                                        bestAction = a.getActionNo();
-                                    }
-                                } else if(a.getActionNo() == 4) { //Change tires
-                                    for (int newTire=0; newTire<ps.NUM_TYRE_MODELS - 1; newTire++) {
-                                        newState = new State(pos, false, false, cars.get(car),
-                                                50, TirePressure.ONE_HUNDRED_PERCENT, drivers.get(driver), tires.get(newTire % ps.NUM_TYRE_MODELS));
-                                        double newValue = reward.get(state) + valueIteration.get(newState) * ps.getDiscountFactor();
-                                        if (bestValue < newValue) {
-                                            bestValue = newValue;
-                                            bestAction = a.getActionNo();
-                                        }
-                                    }
-                                }
-                                valueIterationTmp.put(state, bestValue);
-                                policyTmp.put(state, bestAction);
-                            }
-                        }
-                    }
-                }
-            }
+        this.space = new StateSpace(ps);
+        this.moveDistribution = ps.getMoveDistribution();
+        this.fuelTable = ps.getFuelTable();
+        this.consumesFuel = ps.getLevel().getLevelNumber() > 1;
+
+        Tire[] tires = Tire.values();
+        tireIndices = new int[tires.length];
+        for (Tire tire : tires) {
+            tireIndices[tire.ordinal()] = ps.getTireIndex(tire);
         }
-        valueIteration = valueIterationTmp;
-        policy = policyTmp;
-    }
-
-    public double sumTransitionFunc(State s) {
-        Terrain terrain = ps.getEnvironmentMap()[s.getPos()];
-        int terrainIndex = ps.getTerrainIndex(terrain);
-        String car = s.getCarType();
-        String driver = s.getDriver();
-        Tire tire = s.getTireModel();
-
-        // calculate priors
-        double priorK = 1.0 / ProblemSpec.CAR_MOVE_RANGE;
-        double priorCar = 1.0 / ps.getCT();
-        double priorDriver = 1.0 / ps.getDT();
-        double priorTire = 1.0 / ProblemSpec.NUM_TYRE_MODELS;
-        double priorTerrain = 1.0 / ps.getNT();
-        double priorPressure = 1.0 / ProblemSpec.TIRE_PRESSURE_LEVELS;
-
-        // get probabilities of k given parameter
-        double[] pKGivenCar = ps.getCarMoveProbability().get(car);
-        double[] pKGivenDriver = ps.getDriverMoveProbability().get(driver);
-        double[] pKGivenTire = ps.getTireModelMoveProbability().get(tire);
-        double pSlipGivenTerrain = ps.getSlipProbability()[terrainIndex];
-        //double[] pKGivenPressureTerrain = convertSlipProbs(pSlipGivenTerrain);
-
-        // use bayes rule to get probability of parameter given k
-        double[] pCarGivenK = bayesRule(pKGivenCar, priorCar, priorK);
-        double[] pDriverGivenK = bayesRule(pKGivenDriver, priorDriver, priorK);
-        double[] pTireGivenK = bayesRule(pKGivenTire, priorTire, priorK);
-        //double[] pPressureTerrainGivenK = bayesRule(pKGivenPressureTerrain, (priorTerrain * priorPressure), priorK);
-
-
-        // use conditional probability formula on assignment sheet to get what
-        // we want (but what is it that we want....)
-        double[] kProbs = new double[ProblemSpec.CAR_MOVE_RANGE];
-        double kProbsSum = 0;
-        double kProb;
         for (int k = 0; k < ProblemSpec.CAR_MOVE_RANGE; k++) {
-            kProb = pCarGivenK[k]*pDriverGivenK[k]*
-                    pTireGivenK[k]* priorK; //*pPressureTerrainGivenK[k];
-            kProbsSum += kProb;
-            kProbs[k] = kProb;
+            moves[k] = ps.convertIndexIntoMove(k);
+        }
+        int longestAction = Math.max(Math.max(ps.getSlipRecoveryTime(), ps.getRepairTime()),
+                TransitionKernel.fuelSteps(ProblemSpec.FUEL_MAX));
+        discounts = new double[longestAction + 1];
+        for (int steps = 0; steps <= longestAction; steps++) {
+            discounts[steps] = Math.pow(ps.getDiscountFactor(), steps);
         }
 
-        for (int k = 0; k < ProblemSpec.CAR_MOVE_RANGE; k++) {
-            kProbs[k] /= kProbsSum;
-        }
-
-        float probability = 0;
-        for(int i=0; i<kProbs.length-2; i++) {
-            if(s.getPos() + (i-4) < 0) {
-                probability += kProbs[i];
-                kProbs[i] = 0;
-            } else if (s.getPos() + (i-4) >= ps.getN()) {
-                int maxSteps = ps.getN() - 1 - s.getPos();
-                State s1 = s.copyState().changePosition(maxSteps, ps.getN());
-                kProbs[maxSteps] += (kProbs[i]*valueIteration.get(s1));
-                kProbs[i] = 0;
-            } else {
-                kProbs[i] += probability;
-                State s1 = s.copyState().changePosition(i-4, ps.getN());
-                kProbs[i] *= valueIteration.get(s1);
-                probability = 0;
-            }
-        }
-        kProbs[10] *= -ps.getSlipRecoveryTime()*0.1;
-        kProbs[11] *= -ps.getRepairTime()*0.1;
-
-        double sumTransistion = 0.0;
-        for(Double prob : kProbs) {
-            sumTransistion += prob;
-        }
-
-        return sumTransistion;
-    }
-
-    public void initReward() {
-        State state;
-        for(int pos=0; pos<ps.getN(); pos++) {
-            for(int car=0; car<ps.getCT(); car++) {
-                for(int driver=0; driver<ps.getDT(); driver++) {
-                    for(int tire=0; tire<ps.NUM_TYRE_MODELS; tire++) {
-                        if(ps.getLevel().getLevelNumber() == 1) {
-                            state = new State(pos, false, false, cars.get(car),
-                                    50, TirePressure.ONE_HUNDRED_PERCENT, drivers.get(driver), tires.get(tire));
-                            if(pos != ps.getN()-1) {
-                                valueIteration.put(state, -0.1);
-                                reward.put(state, -0.1);
-                            } else {
-                                valueIteration.put(state, 10.0);
-                                reward.put(state, 10.0);
-                            }
-                        }
-                    }
+        List<Action> levelActions = listActions();
+        actions = levelActions.toArray(new Action[0]);
+        actionTypes = new ActionType[actions.length];
+        actionCars = new int[actions.length];
+        actionDrivers = new int[actions.length];
+        actionTires = new int[actions.length];
+        actionFuels = new int[actions.length];
+        actionPressures = new int[actions.length];
+        for (int i = 0; i < actions.length; i++) {
+            Action a = actions[i];
+            actionTypes[i] = a.getActionType();
+            actionCars[i] = a.getCarType() == null ? -1 : ps.getCarIndex(a.getCarType());
+            actionDrivers[i] = a.getDriverType() == null ? -1 : ps.getDriverIndex(a.getDriverType());
+            actionTires[i] = a.getTireModel() == null ? -1 : a.getTireModel().ordinal();
+            actionFuels[i] = a.getFuel();
+            actionPressures[i] = a.getTirePressure() == null ? -1 : space.pressureIndex(a.getTirePressure());
+        }
+
+        values = new double[space.size];
+        policy = new int[space.size];
+        // the goal is reached at the last cell
+        for (int id = (space.N - 1) * space.cellSize; id < space.size; id++) {
+            values[id] = 1;
+        }
+        next = values.clone();
+    }
+
+    /**
+     * Every action of the level that can be the best action of some state,
+     * MOVE first
+     */
+    private List<Action> listActions() {
+        List<Action> levelActions = new ArrayList<>();
+        Level level = ps.getLevel();
+        levelActions.add(new Action(ActionType.MOVE));
+        if (level.isValidActionForLevel(ActionType.CHANGE_CAR)) {
+            for (String car : ps.getCarOrder()) {
+                levelActions.add(new Action(ActionType.CHANGE_CAR, car));
+            }
+        }
+        if (level.isValidActionForLevel(ActionType.CHANGE_DRIVER)) {
+            for (String driver : ps.getDriverOrder()) {
+                levelActions.add(new Action(ActionType.CHANGE_DRIVER, driver));
+            }
+        }
+        if (level.isValidActionForLevel(ActionType.CHANGE_TIRES)) {
+            for (Tire tire : Tire.values()) {
+                levelActions.add(new Action(ActionType.CHANGE_TIRES, tire));
+            }
+        }
+        if (level.isValidActionForLevel(ActionType.ADD_FUEL)) {
+            for (int fuel = 10; fuel <= ProblemSpec.FUEL_MAX; fuel += 10) {
+                levelActions.add(new Action(ActionType.ADD_FUEL, fuel));
+            }
+        }
+        if (level.isValidActionForLevel(ActionType.CHANGE_PRESSURE)) {
+            for (TirePressure pressure : TirePressure.values()) {
+                levelActions.add(new Action(ActionType.CHANGE_PRESSURE, pressure));
+            }
+        }
+        if (level.isValidActionForLevel(ActionType.CHANGE_CAR_AND_DRIVER)) {
+            for (String car : ps.getCarOrder()) {
+                for (String driver : ps.getDriverOrder()) {
+                    levelActions.add(new Action(ActionType.CHANGE_CAR_AND_DRIVER, car, driver));
                 }
             }
         }
+        if (level.isValidActionForLevel(ActionType.CHANGE_TIRE_FUEL_PRESSURE)) {
+            for (Tire tire : Tire.values()) {
+                for (TirePressure pressure : TirePressure.values()) {
+                    levelActions.add(new Action(ActionType.CHANGE_TIRE_FUEL_PRESSURE, tire,
+                            ProblemSpec.FUEL_MAX, pressure));
+                }
+            }
+        }
+        return levelActions;
     }
 
+    /**
+     * Sweep over all states until the values converge
+     *
+     * @param epsilon largest change of a value in a sweep at which the
+     *                values have converged
+     */
+    public void solve(double epsilon) {
+        solve(epsilon, 1);
+    }
 
     /**
-     * Apply bayes rule to all values in cond probs list.
+     * Sweep over all states until the values converge. Every sweep computes
+     * the new values from those of the previous sweep (Jacobi updates), so
+     * with more than one thread the states are split into ranges that are
+     * backed up in parallel on a fork join pool.
      *
-     * @param condProb list of P(B|A)
-     * @param priorA   prior probability of parameter A
-     * @param priorB   prior probability of parameter B
-     * @return list of P(A|B)
+     * @param epsilon largest change of a value in a sweep at which the
+     *                values have converged
+     * @param threads number of threads sweeping the states
      */
-    private double[] bayesRule(double[] condProb, double priorA, double priorB) {
+    public void solve(double epsilon, int threads) {
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            double change;
+            do {
+                change = sweep(pool, true);
+            } while (change > epsilon && sweeps < MAX_SWEEPS);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
 
-        double[] swappedProb = new double[condProb.length];
+    /**
+     * Back up the states until the values converge
+     *
+     * @param epsilon largest change of a value in a sweep at which the
+     *                values have converged
+     * @param threads number of threads sweeping the states, only a Jacobi
+     *                schedule uses more than one
+     * @param schedule order in which the states are backed up
+     */
+    public void solve(double epsilon, int threads, Schedule schedule) {
+        switch (schedule) {
+            case GAUSS_SEIDEL:
+                double change;
+                do {
+                    change = gaussSeidelSweep();
+                } while (change > epsilon && sweeps < MAX_SWEEPS);
+                break;
+            case PRIORITIZED:
+                solvePrioritized(epsilon);
+                break;
+            default:
+                solve(epsilon, threads);
+        }
+    }
 
-        for (int i = 0; i < condProb.length; i++) {
-            swappedProb[i] = (condProb[i] * priorA) / priorB;
+    /**
+     * Back up every state once in place, from the cell before the goal back
+     * to the start, so a sweep carries the values of the goal all the way
+     * back along the track
+     *
+     * @return largest change of a value in the sweep
+     */
+    private double gaussSeidelSweep() {
+        residual = 0;
+        for (int pos = space.N - 1; pos >= 1; pos--) {
+            residual = Math.max(residual, backupCell(pos));
         }
-        return swappedProb;
+        sweeps++;
+        return residual;
     }
-}
 
+    /**
+     * Prioritized sweeping over the cells of the track. A move goes from a
+     * cell at most 5 back to 4 ahead of where it ends and every other action
+     * stays in its cell, so when the values of a cell change, only those
+     * cells need backing up again. The cell with the largest change is backed
+     * up first, cells whose values change by no more than epsilon are done.
+     *
+     * @param epsilon largest change of a value at which the values have
+     *                converged
+     */
+    private void solvePrioritized(double epsilon) {
+        // cells 1 to N - 1 are queued as 0 to N - 2
+        CellQueue queue = new CellQueue(space.N - 1);
+        // one sweep from the goal backwards gives every cell its priority
+        for (int pos = space.N - 1; pos >= 1; pos--) {
+            double change = backupCell(pos);
+            if (change > epsilon) {
+                queue.raise(pos - 1, change);
+            }
+        }
+        sweeps++;
+        long maxBackups = (long) MAX_SWEEPS * goalStart();
+        while (!queue.isEmpty() && backups < maxBackups) {
+            int pos = queue.poll() + 1;
+            double change = backupCell(pos);
+            if (change <= epsilon) {
+                continue;
+            }
+            for (int from = Math.max(1, pos - 5); from <= Math.min(space.N - 1, pos + 4); from++) {
+                queue.raise(from - 1, change);
+            }
+        }
+        residual = queue.isEmpty() ? 0 : queue.peekPriority();
+    }
+
+    /**
+     * Back up the states of a cell in place. Fuel is the last part of the
+     * state id, so in id order the state a move leaves the car in after a
+     * slip or breakdown, with less fuel, is backed up before the move.
+     *
+     * @param pos cell index (1 indexed), before the goal
+     * @return largest change of a value in the cell
+     */
+    private double backupCell(int pos) {
+        double change = 0;
+        int start = (pos - 1) * space.cellSize;
+        for (int id = start; id < start + space.cellSize; id++) {
+            double value = backup(id, values, true);
+            change = Math.max(change, Math.abs(value - values[id]));
+            values[id] = value;
+        }
+        backups += space.cellSize;
+        return change;
+    }
+
+    /**
+     * Back up every state once
+     *
+     * @param pool pool to sweep on, null to sweep on this thread
+     * @param improve true to pick the best action of every state, false to
+     *                only evaluate the actions of the current policy
+     * @return largest change of a value in the sweep
+     */
+    double sweep(ForkJoinPool pool, boolean improve) {
+        if (pool == null) {
+            residual = sweep(0, goalStart(), improve);
+        } else {
+            residual = pool.invoke(new Sweep(0, goalStart(), improve));
+        }
+        double[] swap = values;
+        values = next;
+        next = swap;
+        sweeps++;
+        backups += goalStart();
+        return residual;
+    }
+
+    /**
+     * Back up a range of states, reading the values of the previous sweep
+     * and writing the next values
+     *
+     * @param from first state id
+     * @param to state id after the last state
+     * @param improve whether to pick the best action or keep the policy
+     * @return largest change of a value in the range
+     */
+    private double sweep(int from, int to, boolean improve) {
+        double rangeResidual = 0;
+        for (int id = from; id < to; id++) {
+            double value = backup(id, values, improve);
+            rangeResidual = Math.max(rangeResidual, Math.abs(value - values[id]));
+            next[id] = value;
+        }
+        return rangeResidual;
+    }
+
+    /**
+     * Backs up a range of states, split in halves until they are small
+     * enough, and returns the largest change of a value in the range
+     */
+    private class Sweep extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+        private static final int MIN_SPLIT = 4096;
+        private final int from;
+        private final int to;
+        private final boolean improve;
+
+        Sweep(int from, int to, boolean improve) {
+            this.from = from;
+            this.to = to;
+            this.improve = improve;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= MIN_SPLIT) {
+                return sweep(from, to, improve);
+            }
+            int half = (from + to) >>> 1;
+            Sweep left = new Sweep(from, half, improve);
+            left.fork();
+            double rightResidual = new Sweep(half, to, improve).compute();
+            return Math.max(left.join(), rightResidual);
+        }
+    }
+
+    /**
+     * @return id of the first goal state, all states before it need solving
+     */
+    private int goalStart() {
+        return (space.N - 1) * space.cellSize;
+    }
+
+    /**
+     * Find the best action of a state with the given values of the other
+     * states, and store it in the policy
+     *
+     * @param id the state id
+     * @param values the values of all states
+     * @param improve false to only value the action of the policy
+     * @return the value of the state under its best action
+     */
+    private double backup(int id, double[] values, boolean improve) {
+        // decode the state id, see StateSpace
+        int rest = id;
+        int fuel = space.fuel(rest % space.fuels);
+        rest /= space.fuels;
+        int pressure = rest % space.pressures;
+        rest /= space.pressures;
+        int tire = rest % space.tires;
+        rest /= space.tires;
+        int driver = rest % space.drivers;
+        rest /= space.drivers;
+        int car = rest % space.cars;
+        int pos = rest / space.cars + 1;
+
+        // ids of the state with a new car, at full pressure with a full tank,
+        // and of the state with new tires, at full pressure
+        int newCar = id - car * space.carStride + (space.fullPressure - pressure) * space.pressureStride
+                + space.fullFuel - space.fuelIndex(fuel);
+        int newTires = id + (space.fullPressure - pressure) * space.pressureStride;
+
+        double best = 0;
+        int bestAction = improve ? 0 : policy[id];
+        int first = improve ? 0 : policy[id];
+        int last = improve ? actions.length : first + 1;
+        for (int i = first; i < last; i++) {
+            double q;
+            switch (actionTypes[i]) {
+                case MOVE:
+                    q = moveValue(values, id, pos, car, driver, tire, pressure, fuel);
+                    break;
+                case CHANGE_CAR:
+                    if (actionCars[i] == car) {
+                        continue;
+                    }
+                    q = discounts[1] * values[newCar + actionCars[i] * space.carStride];
+                    break;
+                case CHANGE_DRIVER:
+                    if (actionDrivers[i] == driver) {
+                        continue;
+                    }
+                    q = discounts[1] * values[id + (actionDrivers[i] - driver) * space.driverStride];
+                    break;
+                case CHANGE_TIRES:
+                    if (actionTires[i] == tire) {
+                        continue;
+                    }
+                    q = discounts[1] * values[newTires + (actionTires[i] - tire) * space.tireStride];
+                    break;
+                case ADD_FUEL:
+                    if (fuel == ProblemSpec.FUEL_MAX) {
+                        continue;
+                    }
+                    q = discounts[TransitionKernel.fuelSteps(actionFuels[i])]
+                            * values[id + Math.min(ProblemSpec.FUEL_MAX - fuel, actionFuels[i])];
+                    break;
+                case CHANGE_PRESSURE:
+                    if (actionPressures[i] == pressure) {
+                        continue;
+                    }
+                    q = discounts[1] * values[id + (actionPressures[i] - pressure) * space.pressureStride];
+                    break;
+                case CHANGE_CAR_AND_DRIVER:
+                    if (actionCars[i] == car && actionDrivers[i] == driver) {
+                        continue;
+                    }
+                    if (actionCars[i] == car) {
+                        // same car, only the driver changes
+                        q = discounts[1] * values[id + (actionDrivers[i] - driver) * space.driverStride];
+                    } else {
+                        q = discounts[1] * values[newCar + actionCars[i] * space.carStride
+                                + (actionDrivers[i] - driver) * space.driverStride];
+                    }
+                    break;
+                default:
+                    q = discounts[1] * values[id + (actionTires[i] - tire) * space.tireStride
+                            + (actionPressures[i] - pressure) * space.pressureStride
+                            + Math.min(ProblemSpec.FUEL_MAX - fuel, actionFuels[i])];
+                    break;
+            }
+            if (q > best) {
+                best = q;
+                bestAction = i;
+            }
+        }
+        policy[id] = bestAction;
+        return best;
+    }
+
+    /**
+     * Expected discounted value of moving
+     *
+     * @return the value, 0 if there is not enough fuel to move
+     */
+    private double moveValue(double[] values, int id, int pos, int car, int driver, int tire,
+                             int pressure, int fuel) {
+        TirePressure tirePressure = space.pressure(pressure);
+        int used = 0;
+        if (consumesFuel) {
+            used = fuelTable.getConsumption(pos, car, tirePressure);
+            if (used > fuel) {
+                return 0;
+            }
+        }
+        int configuration = moveDistribution.getConfiguration(ps.getCellTerrainIndex(pos), car, driver,
+                tireIndices[tire], tirePressure);
+        // id of the state after a slip or breakdown, moves are a whole cell apart
+        int stay = id - used;
+        double q = 0;
+        for (int k = 0; k < ProblemSpec.CAR_MOVE_RANGE; k++) {
+            double p = moveDistribution.getProbability(configuration, k);
+            if (p == 0) {
+                continue;
+            }
+            int move = moves[k];
+            if (move == ProblemSpec.SLIP) {
+                q += p * discounts[ps.getSlipRecoveryTime()] * values[stay];
+            } else if (move == ProblemSpec.BREAKDOWN) {
+                q += p * discounts[ps.getRepairTime()] * values[stay];
+            } else {
+                int next = Math.max(1, Math.min(space.N, pos + move));
+                q += p * discounts[1] * values[stay + (next - pos) * space.cellSize];
+            }
+        }
+        return q;
+    }
+
+    /**
+     * @param s a state of the problem
+     * @return the value of the state
+     */
+    public double getValue(State s) {
+        return values[space.id(ps, s)];
+    }
+
+    /**
+     * @param id a state id of the state space
+     * @return the value of the state
+     */
+    double getValue(int id) {
+        return values[id];
+    }
+
+    /**
+     * @param s a state of the problem, before the goal
+     * @return the best action in the state
+     */
+    public Action getAction(State s) {
+        return actions[policy[space.id(ps, s)]];
+    }
+
+    /**
+     * @return number of sweeps run over these values
+     */
+    public int getSweeps() {
+        return sweeps;
+    }
+
+    /**
+     * @return largest change of a value in the last sweep
+     */
+    public double getResidual() {
+        return residual;
+    }
+
+    /**
+     * @return number of state backups run over these values
+     */
+    public long getBackups() {
+        return backups;
+    }
+
+    /**
+     * @return number of states
+     */
+    public int getStates() {
+        return space.size;
+    }
+}
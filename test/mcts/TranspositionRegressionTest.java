@@ -0,0 +1,47 @@
+package mcts;
+
+import problem.ProblemSpec;
+
+import java.io.File;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regression run of the search with the transposition table on levels 3 and
+ * 4. Slips, breakdowns and moves of 0 that end in the same state used to
+ * share the counts their chance node samples outcomes by, and the search
+ * never reached the goal.
+ */
+public class TranspositionRegressionTest {
+
+    /** Time a run may take before it counts as never reaching the goal **/
+    private static final long TIMEOUT_SECONDS = 300;
+
+    public static void main(String[] args) throws Exception {
+        for (String input : new String[] {"examples/level_3/input_lvl3.txt",
+                "examples/level_4/input_lvl4.txt"}) {
+            for (long seed = 1; seed <= 2; seed++) {
+                reachesGoal(input, seed);
+            }
+        }
+        System.out.println("TranspositionRegressionTest passed");
+    }
+
+    private static void reachesGoal(String input, long seed) throws Exception {
+        ProblemSpec ps = new ProblemSpec(input);
+        File output = File.createTempFile("transpositions", ".txt");
+        output.deleteOnExit();
+        SearchConfig config = new SearchConfig()
+                .setTranspositions(true)
+                .setIterations(1000)
+                .setSeed(seed);
+        FutureTask<Integer> run = new FutureTask<>(() -> new MCTS(ps, output.getPath(), config).stepCounter);
+        // a daemon thread, so a search that never ends does not keep the JVM alive
+        Thread worker = new Thread(run);
+        worker.setDaemon(true);
+        worker.start();
+        int steps = run.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assert steps > 0 && steps <= ps.getMaxT()
+                : input + " seed " + seed + " reached the goal in " + steps + " steps";
+    }
+}
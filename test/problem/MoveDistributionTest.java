@@ -0,0 +1,54 @@
+package problem;
+
+/**
+ * Checks that sampling a move with the alias table of every configuration
+ * picks each move index as often as its probability in the distribution.
+ */
+public class MoveDistributionTest {
+
+    /** Evenly spaced samples per column of an alias table **/
+    private static final int SAMPLES_PER_COLUMN = 10000;
+    /** Largest difference between a frequency and its probability **/
+    private static final double TOLERANCE = 1e-4;
+
+    public static void main(String[] args) throws Exception {
+        for (String input : new String[] {"examples/level_1/input_lvl1.txt",
+                "examples/level_5/input_lvl5.txt"}) {
+            checkFrequencies(new ProblemSpec(input));
+        }
+        System.out.println("MoveDistributionTest passed");
+    }
+
+    private static void checkFrequencies(ProblemSpec ps) {
+        MoveDistribution distribution = ps.getMoveDistribution();
+        int samples = SAMPLES_PER_COLUMN * ProblemSpec.CAR_MOVE_RANGE;
+        for (int terrain = 0; terrain < ps.getNT(); terrain++) {
+            for (int car = 0; car < ps.getCT(); car++) {
+                for (int driver = 0; driver < ps.getDT(); driver++) {
+                    for (int tire = 0; tire < ProblemSpec.NUM_TYRE_MODELS; tire++) {
+                        for (TirePressure pressure : TirePressure.values()) {
+                            int configuration = distribution.getConfiguration(terrain, car, driver, tire, pressure);
+                            // samples spread evenly over [0, 1) hit every part of
+                            // every column, so the counts follow the table exactly
+                            int[] counts = new int[ProblemSpec.CAR_MOVE_RANGE];
+                            for (int i = 0; i < samples; i++) {
+                                counts[distribution.sampleIndex(configuration, (i + 0.5) / samples)]++;
+                            }
+                            double total = 0;
+                            for (int k = 0; k < ProblemSpec.CAR_MOVE_RANGE; k++) {
+                                double probability = distribution.getProbability(configuration, k);
+                                double frequency = counts[k] / (double) samples;
+                                total += probability;
+                                assert Math.abs(frequency - probability) < TOLERANCE
+                                        : "configuration " + configuration + " move index " + k + " sampled "
+                                        + frequency + " instead of " + probability;
+                            }
+                            assert Math.abs(total - 1) < 1e-9
+                                    : "configuration " + configuration + " sums to " + total;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package simulator;
+
+import problem.ProblemSpec;
+import problem.Tire;
+import problem.TirePressure;
+
+/**
+ * Checks that every state of a problem survives packing and unpacking, both
+ * through State and through ScratchState, and that the largest values the
+ * problem limits allow keep to their own fields.
+ */
+public class PackedStateTest {
+
+    public static void main(String[] args) throws Exception {
+        for (String input : new String[] {"examples/level_1/input_lvl1.txt",
+                "examples/level_5/input_lvl5.txt"}) {
+            checkRoundTrips(new ProblemSpec(input));
+        }
+        checkLimits();
+        System.out.println("PackedStateTest passed");
+    }
+
+    private static void checkRoundTrips(ProblemSpec ps) {
+        ScratchState scratch = new ScratchState();
+        for (int pos = 1; pos <= ps.getN(); pos++) {
+            for (int fuel = ProblemSpec.FUEL_MIN; fuel <= ProblemSpec.FUEL_MAX; fuel++) {
+                for (String car : ps.getCarOrder()) {
+                    for (String driver : ps.getDriverOrder()) {
+                        for (Tire tire : Tire.values()) {
+                            for (TirePressure pressure : TirePressure.values()) {
+                                for (int conditions = 0; conditions < 4; conditions++) {
+                                    boolean slip = (conditions & 1) != 0;
+                                    boolean breakdown = (conditions & 2) != 0;
+                                    State s = new State(pos, slip, breakdown, car, fuel, pressure, driver, tire);
+                                    long key = PackedState.pack(ps, s);
+                                    assert s.equals(PackedState.unpack(ps, key)) : s + " unpacked differently";
+                                    scratch.load(key);
+                                    assert scratch.pack() == key : s + " packed differently by ScratchState";
+                                    assert s.equals(scratch.toState(ps)) : s + " loaded differently";
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkLimits() {
+        int car = ProblemSpec.MAX_CT - 1;
+        int driver = ProblemSpec.MAX_DT - 1;
+        long key = PackedState.pack(ProblemSpec.MAX_N, true, true, car, ProblemSpec.FUEL_MAX,
+                TirePressure.ONE_HUNDRED_PERCENT, driver, Tire.PERFORMANCE);
+        assert PackedState.pos(key) == ProblemSpec.MAX_N;
+        assert PackedState.fuel(key) == ProblemSpec.FUEL_MAX;
+        assert PackedState.carId(key) == car;
+        assert PackedState.driverId(key) == driver;
+        assert PackedState.tireModel(key) == Tire.PERFORMANCE;
+        assert PackedState.tirePressure(key) == TirePressure.ONE_HUNDRED_PERCENT;
+        assert PackedState.isInSlipCondition(key) && PackedState.isInBreakdownCondition(key);
+
+        boolean rejected = false;
+        try {
+            PackedState.pack(ProblemSpec.MAX_N + 1, false, false, 0, 0, TirePressure.FIFTY_PERCENT, 0, Tire.MUD);
+        } catch (AssertionError e) {
+            rejected = true;
+        }
+        assert rejected : "a position past MAX_N was packed";
+    }
+}
@@ -0,0 +1,132 @@
+package simulator;
+
+import problem.Action;
+import problem.ActionType;
+import problem.ProblemSpec;
+import problem.Tire;
+import problem.TirePressure;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that an episode written to a binary trace and converted back to
+ * text gives the same output file as the simulator writes directly, on
+ * every level, also when steps are taken after the episode has failed.
+ */
+public class TraceRoundTripTest {
+
+    public static void main(String[] args) throws Exception {
+        for (int level = 1; level <= 5; level++) {
+            String input = "examples/level_" + level + "/input_lvl" + level + ".txt";
+            for (long seed = 1; seed <= 3; seed++) {
+                checkRoundTrip(new ProblemSpec(input), seed);
+            }
+        }
+        checkStepsAfterFailure(new ProblemSpec("examples/level_2/input_lvl2.txt"));
+        System.out.println("TraceRoundTripTest passed");
+    }
+
+    private static void checkRoundTrip(ProblemSpec ps, long seed) throws Exception {
+        File output = File.createTempFile("episode", ".txt");
+        File trace = File.createTempFile("episode", ".trace");
+        File converted = File.createTempFile("converted", ".txt");
+        try {
+            RandomSource random = RandomSource.create(RandomSource.Type.SPLITTABLE, seed);
+            List<Action> actions = levelActions(ps);
+            try (TraceWriter traceWriter = new TraceWriter(ps, trace.getPath())) {
+                // the simulator starts the episode when it is created
+                Simulator sim = new Simulator(ps, output.getPath(), traceWriter, random.split());
+                State s;
+                // mostly moves, with every other action of the level now and then
+                do {
+                    Action a = random.nextInt(3) > 0 ? actions.get(0) : actions.get(random.nextInt(actions.size()));
+                    s = sim.step(a);
+                } while (s != null && s.getPos() < ps.getN());
+            }
+            checkConverted(output, trace, converted, "level " + ps.getLevel().getLevelNumber() + " seed " + seed);
+        } finally {
+            output.delete();
+            trace.delete();
+            converted.delete();
+        }
+    }
+
+    /**
+     * Steps taken after the steps have run out must neither end the episode
+     * again nor write anything more
+     */
+    private static void checkStepsAfterFailure(ProblemSpec ps) throws Exception {
+        File output = File.createTempFile("episode", ".txt");
+        File trace = File.createTempFile("episode", ".trace");
+        File converted = File.createTempFile("converted", ".txt");
+        try {
+            RandomSource random = RandomSource.create(RandomSource.Type.SPLITTABLE, 1);
+            try (TraceWriter traceWriter = new TraceWriter(ps, trace.getPath())) {
+                Simulator sim = new Simulator(ps, output.getPath(), traceWriter, random);
+                // changing the pressure never reaches the goal
+                Action a = new Action(ActionType.CHANGE_PRESSURE, TirePressure.FIFTY_PERCENT);
+                State s;
+                do {
+                    s = sim.step(a);
+                } while (s != null);
+                assert sim.getSummary().isMaxStepsExceeded();
+                for (int i = 0; i < 3; i++) {
+                    assert sim.step(new Action(ActionType.MOVE)) == null;
+                }
+            }
+            checkConverted(output, trace, converted, "steps after failure");
+        } finally {
+            output.delete();
+            trace.delete();
+            converted.delete();
+        }
+    }
+
+    /**
+     * Convert the trace of one episode and compare it with the output file
+     */
+    private static void checkConverted(File output, File trace, File converted, String episode)
+            throws Exception {
+        int episodes = TraceConverter.convert(trace.getPath(), converted.getPath());
+        assert episodes == 1 : episode + ": converted " + episodes + " episodes";
+        byte[] expected = Files.readAllBytes(output.toPath());
+        byte[] actual = Files.readAllBytes(converted.toPath());
+        assert Arrays.equals(expected, actual) : episode + " converted to\n" + new String(actual)
+                + "\ninstead of\n" + new String(expected);
+    }
+
+    /**
+     * Every action valid for the level, MOVE first
+     */
+    private static List<Action> levelActions(ProblemSpec ps) {
+        List<Action> actions = new ArrayList<>();
+        actions.add(new Action(ActionType.MOVE));
+        for (String car : ps.getCarOrder()) {
+            actions.add(new Action(ActionType.CHANGE_CAR, car));
+            for (String driver : ps.getDriverOrder()) {
+                actions.add(new Action(ActionType.CHANGE_CAR_AND_DRIVER, car, driver));
+            }
+        }
+        for (String driver : ps.getDriverOrder()) {
+            actions.add(new Action(ActionType.CHANGE_DRIVER, driver));
+        }
+        for (Tire tire : Tire.values()) {
+            actions.add(new Action(ActionType.CHANGE_TIRES, tire));
+            for (TirePressure pressure : TirePressure.values()) {
+                actions.add(new Action(ActionType.CHANGE_TIRE_FUEL_PRESSURE, tire, 20, pressure));
+            }
+        }
+        for (int fuel = 10; fuel <= ProblemSpec.FUEL_MAX; fuel += 10) {
+            actions.add(new Action(ActionType.ADD_FUEL, fuel));
+        }
+        for (TirePressure pressure : TirePressure.values()) {
+            actions.add(new Action(ActionType.CHANGE_PRESSURE, pressure));
+        }
+        actions.removeIf(a -> !ps.getLevel().isValidActionForLevel(a.getActionType()));
+        return actions;
+    }
+}
@@ -0,0 +1,44 @@
+package valueiteration;
+
+import problem.ProblemSpec;
+
+/**
+ * Checks that value iteration reaches the same values with every schedule,
+ * single and multi threaded, and that modified policy iteration reaches them
+ * too.
+ */
+public class ScheduleTest {
+
+    /** Largest difference between the values of two solutions **/
+    private static final double TOLERANCE = 1e-6;
+
+    public static void main(String[] args) throws Exception {
+        ProblemSpec ps = new ProblemSpec("examples/level_2/input_lvl2.txt");
+        ValueIteration reference = new ValueIteration(ps);
+        reference.solve(ValueIteration.DEFAULT_EPSILON, 1, ValueIteration.Schedule.JACOBI);
+
+        for (ValueIteration.Schedule schedule : ValueIteration.Schedule.values()) {
+            for (int threads : new int[] {1, 4}) {
+                ValueIteration vi = new ValueIteration(ps);
+                vi.solve(ValueIteration.DEFAULT_EPSILON, threads, schedule);
+                checkValues(reference, vi, schedule.name().toLowerCase() + ", " + threads + " threads");
+            }
+        }
+        for (int evaluationSweeps : new int[] {1, 10}) {
+            ValueIteration vi = new ValueIteration(ps);
+            new ModifiedPolicyIteration(vi, evaluationSweeps).solve(ValueIteration.DEFAULT_EPSILON, 1);
+            checkValues(reference, vi, "modified policy iteration, " + evaluationSweeps + " evaluation sweeps");
+        }
+        System.out.println("ScheduleTest passed");
+    }
+
+    private static void checkValues(ValueIteration expected, ValueIteration actual, String solver) {
+        assert actual.getSweeps() < ValueIteration.MAX_SWEEPS : solver + " did not converge";
+        assert actual.getStates() == expected.getStates();
+        for (int id = 0; id < expected.getStates(); id++) {
+            double difference = Math.abs(expected.getValue(id) - actual.getValue(id));
+            assert difference <= TOLERANCE : solver + ": state " + id + " has value "
+                    + actual.getValue(id) + " instead of " + expected.getValue(id);
+        }
+    }
+}